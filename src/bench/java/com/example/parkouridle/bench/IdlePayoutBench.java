@@ -0,0 +1,243 @@
+package com.example.parkouridle.bench;
+
+import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.math.MutableBigNumber;
+import com.example.parkouridle.model.PlayerProgress;
+import com.example.parkouridle.service.IdlePayoutEngine;
+import com.example.parkouridle.service.UpgradeService;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Checks the column kernel and {@link IdlePayoutEngine} against the scalar path bit for bit, then times them.
+ * Run with {@code ./gradlew idleBench --args="<players> <fuzzCases> <seed>"}.
+ */
+public final class IdlePayoutBench {
+
+    private static final int WARMUP_PASSES = 10;
+    private static final int MEASURED_PASSES = 20;
+
+    private final UpgradeService upgradeService = new UpgradeService();
+    private final Random random;
+
+    private IdlePayoutBench(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int fuzzCases = args.length > 1 ? Integer.parseInt(args[1]) : 300_000;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 41L;
+        IdlePayoutBench bench = new IdlePayoutBench(seed);
+
+        bench.checkKernel(fuzzCases);
+        bench.checkAdd(fuzzCases);
+        bench.checkEngine(2_000, 60);
+        System.out.println("Exactness: " + fuzzCases + " kernel cases, " + fuzzCases + " adds and a 60 s engine run match.");
+
+        bench.time(players);
+    }
+
+    // Column kernel against the scalar path on random level sets.
+    private void checkKernel(int cases) {
+        int batch = 4096;
+        int[][] levels = new int[6][batch];
+        int[] rows = new int[batch];
+        double[] gainMag = new double[batch];
+        long[] gainLayer = new long[batch];
+        PlayerProgress[] progress = new PlayerProgress[batch];
+        for (int i = 0; i < batch; i++) {
+            rows[i] = i;
+            progress[i] = new PlayerProgress(new UUID(0L, i));
+        }
+        for (int done = 0; done < cases; done += batch) {
+            int count = Math.min(batch, cases - done);
+            for (int i = 0; i < count; i++) {
+                randomLevels(progress[i]);
+                copyLevels(progress[i], levels, i);
+            }
+            upgradeService.computeIdlePointsPerTick(levels, rows, count, gainMag, gainLayer);
+            for (int i = 0; i < count; i++) {
+                BigNumber expected = upgradeService.computeIdlePointsPerTick(progress[i]);
+                if (!same(expected, gainMag[i], gainLayer[i])) {
+                    fail("kernel", describe(progress[i]), expected, gainMag[i], gainLayer[i]);
+                }
+            }
+        }
+    }
+
+    // MutableBigNumber.add against BigNumber.add across layers.
+    private void checkAdd(int cases) {
+        MutableBigNumber sum = new MutableBigNumber();
+        for (int i = 0; i < cases; i++) {
+            BigNumber a = randomNumber();
+            BigNumber b = randomNumber();
+            BigNumber expected = a.add(b);
+            sum.set(a).add(b.mag(), b.layer());
+            if (!same(expected, sum.mag(), sum.layer())) {
+                fail("add", a + " + " + b, expected, sum.mag(), sum.layer());
+            }
+        }
+    }
+
+    // Simulated payouts with upgrades and disconnects, against a scalar replay of the same schedule.
+    private void checkEngine(int players, int seconds) {
+        IdlePayoutEngine engine = new IdlePayoutEngine(upgradeService);
+        Map<UUID, PlayerProgress> live = new HashMap<>();
+        Map<UUID, PlayerProgress> reference = new HashMap<>();
+        Map<UUID, Long> interval = new HashMap<>();
+        Map<UUID, Long> nextDue = new HashMap<>();
+        long now = 0L;
+        for (int i = 0; i < players; i++) {
+            UUID uuid = new UUID(1L, i);
+            PlayerProgress progress = new PlayerProgress(uuid);
+            randomLevels(progress);
+            progress.points = randomNumber();
+            live.put(uuid, progress);
+            reference.put(uuid, progress.copy());
+            long everySeconds = 1L + random.nextInt(5);
+            interval.put(uuid, everySeconds * 1000L);
+            nextDue.put(uuid, now + everySeconds * 1000L);
+            engine.schedule(uuid, everySeconds, now);
+        }
+        UUID[] ids = live.keySet().toArray(new UUID[0]);
+        for (int second = 1; second <= seconds; second++) {
+            now = second * 1000L;
+            for (int i = 0; i < players / 50; i++) {
+                UUID uuid = ids[random.nextInt(ids.length)];
+                if (!live.containsKey(uuid)) {
+                    continue;
+                }
+                if (random.nextInt(10) == 0) {
+                    engine.remove(uuid);
+                    live.remove(uuid);
+                    reference.remove(uuid);
+                    continue;
+                }
+                randomLevels(live.get(uuid));
+                copyLevels(live.get(uuid), reference.get(uuid));
+            }
+            engine.payDue(now, live::get, paid -> { });
+            for (Map.Entry<UUID, PlayerProgress> entry : reference.entrySet()) {
+                UUID uuid = entry.getKey();
+                if (nextDue.get(uuid) <= now) {
+                    nextDue.put(uuid, nextDue.get(uuid) + interval.get(uuid));
+                    PlayerProgress progress = entry.getValue();
+                    progress.points = progress.points.add(upgradeService.computeIdlePointsPerTick(progress));
+                }
+            }
+            for (Map.Entry<UUID, PlayerProgress> entry : reference.entrySet()) {
+                BigNumber expected = entry.getValue().points;
+                BigNumber actual = live.get(entry.getKey()).points;
+                if (!same(expected, actual.mag(), actual.layer())) {
+                    fail("engine at " + second + " s", describe(entry.getValue()), expected, actual.mag(), actual.layer());
+                }
+            }
+        }
+    }
+
+    private void time(int players) {
+        PlayerProgress[] progress = new PlayerProgress[players];
+        int[][] levels = new int[6][players];
+        int[] rows = new int[players];
+        double[] gainMag = new double[players];
+        long[] gainLayer = new long[players];
+        Map<UUID, PlayerProgress> byId = new HashMap<>();
+        IdlePayoutEngine engine = new IdlePayoutEngine(upgradeService);
+        for (int i = 0; i < players; i++) {
+            progress[i] = new PlayerProgress(new UUID(2L, i));
+            randomLevels(progress[i]);
+            copyLevels(progress[i], levels, i);
+            rows[i] = i;
+            byId.put(progress[i].uuid, progress[i]);
+            engine.schedule(progress[i].uuid, 1L, 0L);
+        }
+
+        double scalar = median(() -> {
+            for (PlayerProgress player : progress) {
+                player.points = player.points.add(upgradeService.computeIdlePointsPerTick(player));
+            }
+        });
+        double kernel = median(() -> upgradeService.computeIdlePointsPerTick(levels, rows, players, gainMag, gainLayer));
+        long[] now = {0L};
+        double steady = median(() -> {
+            now[0] += 1000L;
+            engine.payDue(now[0], byId::get, paid -> { });
+        });
+
+        System.out.printf(Locale.ROOT, "Players: %d, JDK %s%n", players, Runtime.version());
+        System.out.printf(Locale.ROOT, "  scalar gain + add per pass:  %8.2f ms%n", scalar);
+        System.out.printf(Locale.ROOT, "  column kernel alone:         %8.2f ms%n", kernel);
+        System.out.printf(Locale.ROOT, "  engine pass, cached gains:   %8.2f ms (%.1fx scalar)%n", steady, scalar / steady);
+    }
+
+    private static double median(Runnable pass) {
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            pass.run();
+        }
+        double[] millis = new double[MEASURED_PASSES];
+        for (int i = 0; i < MEASURED_PASSES; i++) {
+            long start = System.nanoTime();
+            pass.run();
+            millis[i] = (System.nanoTime() - start) / 1_000_000.0;
+        }
+        Arrays.sort(millis);
+        return millis[MEASURED_PASSES / 2];
+    }
+
+    // Spans gains from layer 0 up to the higher layers the option 5 and 6 exponents reach.
+    private void randomLevels(PlayerProgress progress) {
+        progress.option1 = random.nextInt(400);
+        progress.option2 = random.nextInt(100);
+        progress.option3 = random.nextInt(200);
+        progress.option4 = random.nextInt(50);
+        progress.option5 = random.nextInt(40);
+        progress.option6 = random.nextInt(60);
+    }
+
+    private BigNumber randomNumber() {
+        return switch (random.nextInt(3)) {
+            case 0 -> BigNumber.of(random.nextDouble() * 1e12);
+            case 1 -> BigNumber.ofLayer(random.nextDouble() * 300.0, 1);
+            default -> BigNumber.ofLayer(random.nextDouble() * 5.0, 2 + random.nextInt(4));
+        };
+    }
+
+    private static void copyLevels(PlayerProgress progress, int[][] levels, int slot) {
+        levels[0][slot] = progress.option1;
+        levels[1][slot] = progress.option2;
+        levels[2][slot] = progress.option3;
+        levels[3][slot] = progress.option4;
+        levels[4][slot] = progress.option5;
+        levels[5][slot] = progress.option6;
+    }
+
+    private static void copyLevels(PlayerProgress from, PlayerProgress to) {
+        to.option1 = from.option1;
+        to.option2 = from.option2;
+        to.option3 = from.option3;
+        to.option4 = from.option4;
+        to.option5 = from.option5;
+        to.option6 = from.option6;
+    }
+
+    private static boolean same(BigNumber expected, double mag, long layer) {
+        return Double.doubleToLongBits(expected.mag()) == Double.doubleToLongBits(mag) && expected.layer() == layer;
+    }
+
+    private static String describe(PlayerProgress progress) {
+        return "levels " + progress.option1 + "/" + progress.option2 + "/" + progress.option3 + "/"
+            + progress.option4 + "/" + progress.option5 + "/" + progress.option6;
+    }
+
+    private static void fail(String check, String input, BigNumber expected, double mag, long layer) {
+        System.err.printf(Locale.ROOT, "Mismatch in %s for %s: expected %s (%s, %d), got (%s, %d)%n",
+            check, input, expected, expected.mag(), expected.layer(), mag, layer);
+        System.exit(1);
+    }
+}
@@ -1,19 +1,42 @@
 package com.example.parkouridle;
 
 import com.example.parkouridle.command.ParkourRootCommand;
+import com.example.parkouridle.model.ParkourConfig;
+import com.example.parkouridle.model.Track;
+import com.example.parkouridle.service.BackupService;
+import com.example.parkouridle.service.LeaderboardStore;
+import com.example.parkouridle.service.LeaderboardSync;
 import com.example.parkouridle.service.ParkourDataStore;
 import com.example.parkouridle.service.ParkourManager;
+import com.example.parkouridle.service.ParkourStorage;
+import com.example.parkouridle.service.PlayerNameCache;
 import com.example.parkouridle.service.PlayerProgressRepository;
+import com.example.parkouridle.service.PointsRanking;
+import com.example.parkouridle.service.RunTraceStore;
+import com.example.parkouridle.service.SharedDirectoryLeaderboardSync;
+import com.example.parkouridle.service.SqlParkourStorage;
+import com.example.parkouridle.service.StatsHttpServer;
+import com.example.parkouridle.service.TrackPacks;
 import com.example.parkouridle.service.TrackRepository;
+import com.example.parkouridle.service.TrackStatsStore;
 import com.example.parkouridle.service.UpgradeService;
+import com.example.parkouridle.service.WindowedLeaderboards;
 import com.example.parkouridle.ui.ParkourUiService;
+import com.example.parkouridle.util.UuidLongMap;
 import com.hypixel.hytale.logger.HytaleLogger;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerInteractEvent;
 import com.hypixel.hytale.server.core.plugin.JavaPlugin;
 import com.hypixel.hytale.server.core.plugin.JavaPluginInit;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 
 import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 /**
@@ -28,6 +51,8 @@ public class ParkourIdlePlugin extends JavaPlugin {
     private static ParkourIdlePlugin instance;
 
     private ParkourManager parkourManager;
+    private ParkourStorage storage;
+    private StatsHttpServer statsServer;
 
     public ParkourIdlePlugin(@Nonnull JavaPluginInit init) {
         super(init);
@@ -42,37 +67,142 @@ public class ParkourIdlePlugin extends JavaPlugin {
     protected void setup() {
         LOGGER.at(Level.INFO).log("[ParkourIdle] Setting up...");
 
+        int restored = BackupService.applyPendingRestore(getDataDirectory());
+        if (restored >= 0) {
+            LOGGER.at(Level.INFO).log("[ParkourIdle] Restored %s files from a staged backup", restored);
+        }
         ParkourDataStore dataStore = new ParkourDataStore(getDataDirectory());
-        TrackRepository trackRepository = new TrackRepository(dataStore);
-        PlayerProgressRepository progressRepository = new PlayerProgressRepository(dataStore);
+        ParkourConfig config = dataStore.loadConfig();
+        ParkourStorage storage = openStorage(dataStore, config);
+        this.storage = storage;
+        LeaderboardStore leaderboardStore = new LeaderboardStore(getDataDirectory(), storage, storage != dataStore);
+        PointsRanking pointsRanking = new PointsRanking(getDataDirectory());
+        WindowedLeaderboards windowedBoards = new WindowedLeaderboards(getDataDirectory(), config.windowedBoardSize);
+        TrackStatsStore trackStats = new TrackStatsStore(getDataDirectory());
+        PlayerNameCache nameCache = new PlayerNameCache(getDataDirectory(), config.nameCacheSize);
+
+        // Tracks, leaderboards and the one-time players.json migration touch different files, so load them side by side.
+        long loadStart = System.nanoTime();
+        Map<Integer, UuidLongMap> legacyBoards = new ConcurrentHashMap<>();
+        CompletableFuture<List<Track>> tracksLoad = CompletableFuture.supplyAsync(
+            () -> storage == dataStore ? dataStore.loadTracks(legacyBoards) : storage.loadTracks()
+        );
+        CompletableFuture<Integer> boardsLoad = CompletableFuture.supplyAsync(leaderboardStore::load);
+        CompletableFuture<Integer> windowsLoad = CompletableFuture.supplyAsync(windowedBoards::load);
+        CompletableFuture<Integer> statsLoad = CompletableFuture.supplyAsync(trackStats::load);
+        CompletableFuture<Integer> namesLoad = CompletableFuture.supplyAsync(nameCache::load);
+        CompletableFuture<Integer> playersLoad = CompletableFuture.supplyAsync(dataStore::migrateLegacyPlayers);
+        List<Track> tracks = tracksLoad.join();
+        int boardEntries = boardsLoad.join() + leaderboardStore.importLegacy(legacyBoards) + windowsLoad.join();
+        int migratedPlayers = playersLoad.join();
+        statsLoad.join();
+        namesLoad.join();
+        int storedPlayers = storage.countStoredPlayers();
+        // Needs the migrated per-player files when it has to rebuild from scratch.
+        int rankedPlayers = pointsRanking.load(storage);
+        LOGGER.at(Level.INFO).log(
+            "[ParkourIdle] Loaded %s tracks, %s leaderboard entries and %s stored players (%s migrated, %s ranked) in %s ms",
+            tracks.size(),
+            boardEntries,
+            storedPlayers,
+            migratedPlayers,
+            rankedPlayers,
+            (System.nanoTime() - loadStart) / 1_000_000L
+        );
+
+        TrackRepository trackRepository = new TrackRepository(storage, tracks);
+        PlayerProgressRepository progressRepository = new PlayerProgressRepository(storage);
         UpgradeService upgradeService = new UpgradeService();
 
-        this.parkourManager = new ParkourManager(trackRepository, progressRepository, upgradeService);
+        this.parkourManager = new ParkourManager(
+            trackRepository,
+            progressRepository,
+            leaderboardStore,
+            pointsRanking,
+            windowedBoards,
+            trackStats,
+            nameCache,
+            new BackupService(getDataDirectory(), storage, config.backupRetention),
+            new TrackPacks(getDataDirectory(), trackRepository),
+            new RunTraceStore(getDataDirectory(), config.tracesPerTrack),
+            openLeaderboardSync(config),
+            upgradeService,
+            config
+        );
+        if (config.watchTracksFile && storage == dataStore) {
+            parkourManager.watchTracksFile(dataStore.tracksFile());
+        }
         ParkourUiService uiService = new ParkourUiService(parkourManager);
+        if (config.httpPort > 0) {
+            this.statsServer = new StatsHttpServer(parkourManager, config.httpBindAddress, config.httpPort, config.httpTopSize);
+        }
 
         getCommandRegistry().registerCommand(new ParkourRootCommand(parkourManager, uiService));
 
+        getEventRegistry().registerGlobal(PlayerConnectEvent.class, parkourManager::handlePlayerConnect);
         getEventRegistry().registerGlobal(PlayerInteractEvent.class, parkourManager::handlePlayerInteract);
         getEventRegistry().registerGlobal(PlayerDisconnectEvent.class, parkourManager::handlePlayerDisconnect);
+        getEventRegistry().registerGlobal(RemoveWorldEvent.class, parkourManager::handleWorldRemoved);
 
         LOGGER.at(Level.INFO).log("[ParkourIdle] Setup complete!");
     }
 
+    private LeaderboardSync openLeaderboardSync(ParkourConfig config) {
+        if (config.leaderboardSyncDirectory == null || config.leaderboardSyncDirectory.isBlank()) {
+            return LeaderboardSync.NONE;
+        }
+        SharedDirectoryLeaderboardSync sync = new SharedDirectoryLeaderboardSync(
+            Path.of(config.leaderboardSyncDirectory),
+            getDataDirectory()
+        );
+        LOGGER.at(Level.INFO).log(
+            "[ParkourIdle] Sharing leaderboards through %s as server %s",
+            config.leaderboardSyncDirectory,
+            sync.serverId()
+        );
+        return sync;
+    }
+
+    private ParkourStorage openStorage(ParkourDataStore dataStore, ParkourConfig config) {
+        if (!"h2".equalsIgnoreCase(config.storageBackend)) {
+            return dataStore;
+        }
+        dataStore.migrateLegacyPlayers();
+        SqlParkourStorage sql = SqlParkourStorage.open(getDataDirectory());
+        int imported = sql.importIfEmpty(dataStore);
+        if (imported > 0) {
+            LOGGER.at(Level.INFO).log("[ParkourIdle] Copied %s records from the file store into the database", imported);
+        }
+        return sql;
+    }
+
     @Override
     protected void start() {
         if (parkourManager != null) {
             parkourManager.start();
         }
+        if (statsServer != null) {
+            statsServer.start();
+            LOGGER.at(Level.INFO).log("[ParkourIdle] Serving stats on port %s", statsServer.port());
+        }
         LOGGER.at(Level.INFO).log("[ParkourIdle] Started!");
     }
 
     @Override
     protected void shutdown() {
         LOGGER.at(Level.INFO).log("[ParkourIdle] Shutting down...");
+        if (statsServer != null) {
+            statsServer.stop();
+            statsServer = null;
+        }
         if (parkourManager != null) {
             parkourManager.stop();
             parkourManager = null;
         }
+        if (storage != null) {
+            storage.close();
+            storage = null;
+        }
         instance = null;
     }
 }
@@ -1,13 +1,16 @@
 package com.example.parkouridle.command;
 
-import com.example.parkouridle.math.BigNumber;
-import com.example.parkouridle.model.PlayerProgress;
 import com.example.parkouridle.model.Track;
+import com.example.parkouridle.service.BackupService;
 import com.example.parkouridle.service.ParkourManager;
+import com.example.parkouridle.service.PointsRanking;
+import com.example.parkouridle.service.UpgradeService;
+import com.example.parkouridle.service.WindowedLeaderboards;
 import com.example.parkouridle.ui.ParkourUiService;
 import com.example.parkouridle.util.BigNumberFormatter;
 import com.hypixel.hytale.component.Ref;
 import com.hypixel.hytale.component.Store;
+import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.command.system.AbstractCommand;
 import com.hypixel.hytale.server.core.command.system.CommandContext;
@@ -22,8 +25,13 @@ import com.hypixel.hytale.server.core.universe.world.storage.EntityStore;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 public final class ParkourRootCommand extends AbstractPlayerCommand {
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
     private final ParkourUiService parkourUiService;
 
     public ParkourRootCommand(ParkourManager parkourManager, ParkourUiService parkourUiService) {
@@ -35,7 +43,21 @@ public final class ParkourRootCommand extends AbstractPlayerCommand {
         addSubCommand(new ListCommand(parkourManager));
         addSubCommand(new TpCommand(parkourManager));
         addSubCommand(new LeaderboardCommand(parkourManager));
+        addSubCommand(new WindowLeaderboardCommand(parkourManager, WindowedLeaderboards.Window.DAILY));
+        addSubCommand(new WindowLeaderboardCommand(parkourManager, WindowedLeaderboards.Window.WEEKLY));
+        addSubCommand(new WindowLeaderboardCommand(parkourManager, WindowedLeaderboards.Window.MONTHLY));
+        addSubCommand(new TopCommand(parkourManager));
+        addSubCommand(new StatsCommand(parkourManager));
         addSubCommand(new AdminCommand(parkourManager));
+        addSubCommand(new BackupCommand(parkourManager));
+        addSubCommand(new BackupsCommand(parkourManager));
+        addSubCommand(new RestoreCommand(parkourManager));
+        addSubCommand(new ReloadCommand(parkourManager));
+        addSubCommand(new ImportCommand(parkourManager));
+        addSubCommand(new ExportCommand(parkourManager));
+        addSubCommand(new GhostCommand(parkourManager));
+        addSubCommand(new GhostStopCommand(parkourManager));
+        addSubCommand(new TraceCommand(parkourManager));
         addSubCommand(new UpgradeCommand(parkourManager));
         addSubCommand(new UpgradeBuyCommand(parkourManager));
         addSubCommand(new VoidPointBuyCommand(parkourManager));
@@ -46,6 +68,16 @@ public final class ParkourRootCommand extends AbstractPlayerCommand {
         parkourUiService.openMainMenu(store, playerRef, playerMeta);
     }
 
+    private static CompletableFuture<Void> reply(ParkourManager parkourManager, CommandContext context, Supplier<String> query) {
+        return parkourManager.query(query).handle((message, error) -> {
+            if (error != null) {
+                LOGGER.at(Level.WARNING).withCause(error).log("[ParkourIdle] Command query failed");
+            }
+            context.sendMessage(Message.raw(error == null ? message : "Could not run command, please try again."));
+            return null;
+        });
+    }
+
     private static final class MenuCommand extends AbstractPlayerCommand {
         private final ParkourUiService parkourUiService;
 
@@ -69,10 +101,11 @@ public final class ParkourRootCommand extends AbstractPlayerCommand {
         }
 
         @Override
-        protected java.util.concurrent.CompletableFuture<Void> execute(CommandContext context) {
-            List<Integer> ids = parkourManager.listTrackIds();
-            context.sendMessage(Message.raw(ids.isEmpty() ? "No tracks registered." : "Tracks: " + ids));
-            return java.util.concurrent.CompletableFuture.completedFuture(null);
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            return reply(parkourManager, context, () -> {
+                List<Integer> ids = parkourManager.listTrackIds();
+                return ids.isEmpty() ? "No tracks registered." : "Tracks: " + ids;
+            });
         }
     }
 
@@ -108,33 +141,135 @@ public final class ParkourRootCommand extends AbstractPlayerCommand {
         }
 
         @Override
-        protected java.util.concurrent.CompletableFuture<Void> execute(CommandContext context) {
+        protected CompletableFuture<Void> execute(CommandContext context) {
             int id = idArg.get(context);
-            Track track = parkourManager.getTrack(id);
-            if (track == null) {
-                context.sendMessage(Message.raw("Track not found: " + id));
-                return java.util.concurrent.CompletableFuture.completedFuture(null);
-            }
+            return reply(parkourManager, context, () -> {
+                Track track = parkourManager.getTrack(id);
+                if (track == null) {
+                    return "Track not found: " + id;
+                }
+
+                List<Map.Entry<UUID, Long>> top = parkourManager.getTopLeaderboard(id, 50);
+                if (top.isEmpty()) {
+                    return "No leaderboard entries for track " + id;
+                }
+
+                StringBuilder builder = new StringBuilder("Track ").append(id).append(" Top ").append(top.size()).append(":\n");
+                for (int i = 0; i < top.size(); i++) {
+                    Map.Entry<UUID, Long> row = top.get(i);
+                    builder.append(i + 1)
+                        .append(". ")
+                        .append(parkourManager.displayName(row.getKey()))
+                        .append(" -> ")
+                        .append(BigNumberFormatter.formatMillis(row.getValue()))
+                        .append("\n");
+                }
+                return builder.toString();
+            });
+        }
+    }
 
-            List<Map.Entry<UUID, Long>> top = parkourManager.getTopLeaderboard(id, 50);
-            if (top.isEmpty()) {
-                context.sendMessage(Message.raw("No leaderboard entries for track " + id));
-                return java.util.concurrent.CompletableFuture.completedFuture(null);
-            }
+    private static final class WindowLeaderboardCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+        private final WindowedLeaderboards.Window window;
+        private final RequiredArg<Integer> idArg;
 
-            StringBuilder builder = new StringBuilder("Track ").append(id).append(" Top ").append(top.size()).append(":\n");
-            for (int i = 0; i < top.size(); i++) {
-                Map.Entry<UUID, Long> row = top.get(i);
-                builder.append(i + 1)
-                    .append(". ")
-                    .append(row.getKey())
-                    .append(" -> ")
-                    .append(BigNumberFormatter.formatMillis(row.getValue()))
-                    .append("\n");
-            }
+        private WindowLeaderboardCommand(ParkourManager parkourManager, WindowedLeaderboards.Window window) {
+            super(window.name().toLowerCase(java.util.Locale.ROOT), "Show this " + window.label().toLowerCase(java.util.Locale.ROOT) + " period's top 50 for track ID");
+            this.parkourManager = parkourManager;
+            this.window = window;
+            this.idArg = withRequiredArg("id", "Track ID", ArgTypes.INTEGER);
+        }
 
-            context.sendMessage(Message.raw(builder.toString()));
-            return java.util.concurrent.CompletableFuture.completedFuture(null);
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            int id = idArg.get(context);
+            UUID sender = context.isPlayer() ? context.sender().getUuid() : null;
+            return reply(parkourManager, context, () -> {
+                Track track = parkourManager.getTrack(id);
+                if (track == null) {
+                    return "Track not found: " + id;
+                }
+
+                List<Map.Entry<UUID, Long>> top = parkourManager.getTopLeaderboard(id, window, 50);
+                if (top.isEmpty()) {
+                    return "No " + window.label().toLowerCase(java.util.Locale.ROOT) + " entries for track " + id;
+                }
+
+                StringBuilder builder = new StringBuilder("Track ").append(id).append(' ').append(window.label())
+                    .append(" Top ").append(top.size()).append(":\n");
+                for (int i = 0; i < top.size(); i++) {
+                    Map.Entry<UUID, Long> row = top.get(i);
+                    builder.append(i + 1)
+                        .append(". ")
+                        .append(parkourManager.displayName(row.getKey()))
+                        .append(" -> ")
+                        .append(BigNumberFormatter.formatMillis(row.getValue()))
+                        .append("\n");
+                }
+                if (sender != null) {
+                    int rank = parkourManager.getLeaderboardRank(id, window, sender);
+                    builder.append("Your rank: ").append(rank < 0 ? "no time yet" : String.valueOf(rank));
+                }
+                return builder.toString();
+            });
+        }
+    }
+
+    private static final class StatsCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+        private final RequiredArg<Integer> idArg;
+
+        private StatsCommand(ParkourManager parkourManager) {
+            super("stats", "Show attempts, quit rate and time quantiles for track ID");
+            this.parkourManager = parkourManager;
+            this.idArg = withRequiredArg("id", "Track ID", ArgTypes.INTEGER);
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            int id = idArg.get(context);
+            return reply(parkourManager, context, () -> parkourManager.getTrack(id) == null
+                ? "Track not found: " + id
+                : "Track " + id + " stats: " + parkourManager.describeTrackStats(id));
+        }
+    }
+
+    private static final class TopCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+
+        private TopCommand(ParkourManager parkourManager) {
+            super("top", "Show the top 10 players by Void Points and Punkte");
+            this.parkourManager = parkourManager;
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            UUID sender = context.isPlayer() ? context.sender().getUuid() : null;
+            return reply(parkourManager, context, () -> {
+                List<PointsRanking.Entry> top = parkourManager.getTopPoints(10);
+                if (top.isEmpty()) {
+                    return "No ranked players yet.";
+                }
+
+                StringBuilder builder = new StringBuilder("Top ").append(top.size()).append(" by VP and Punkte:\n");
+                for (int i = 0; i < top.size(); i++) {
+                    PointsRanking.Entry row = top.get(i);
+                    builder.append(i + 1)
+                        .append(". ")
+                        .append(parkourManager.displayName(row.uuid()))
+                        .append(" -> VP ")
+                        .append(row.vp())
+                        .append(" | ");
+                    BigNumberFormatter.appendBigNumber(builder, row.points()).append("\n");
+                }
+                if (sender != null) {
+                    int rank = parkourManager.getPointsRank(sender);
+                    builder.append("Your rank: ")
+                        .append(rank < 0 ? "unranked" : rank + " of " + parkourManager.getRankedPlayerCount());
+                }
+                return builder.toString();
+            });
         }
     }
 
@@ -159,6 +294,260 @@ public final class ParkourRootCommand extends AbstractPlayerCommand {
         }
     }
 
+    private static final class BackupCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+
+        private BackupCommand(ParkourManager parkourManager) {
+            super("backup", "Take an incremental backup of the parkour data now");
+            this.parkourManager = parkourManager;
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            context.sendMessage(Message.raw("Backup started..."));
+            return parkourManager.backupNow().handle((summary, error) -> {
+                context.sendMessage(Message.raw(error != null
+                    ? "Backup failed: " + rootMessage(error)
+                    : "Backup " + summary.id() + " written: " + summary.files() + " files, "
+                        + formatBytes(summary.addedBytes()) + " added."));
+                return null;
+            });
+        }
+    }
+
+    private static final class BackupsCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+
+        private BackupsCommand(ParkourManager parkourManager) {
+            super("backups", "List parkour data backups, newest first");
+            this.parkourManager = parkourManager;
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            return parkourManager.listBackups().handle((backups, error) -> {
+                if (error != null) {
+                    context.sendMessage(Message.raw("Could not list backups: " + rootMessage(error)));
+                    return null;
+                }
+                if (backups.isEmpty()) {
+                    context.sendMessage(Message.raw("No backups yet."));
+                    return null;
+                }
+                StringBuilder builder = new StringBuilder("Backups (").append(backups.size()).append("):\n");
+                for (BackupService.Summary backup : backups) {
+                    builder.append(backup.id())
+                        .append(" | ").append(backup.files()).append(" files")
+                        .append(" | ").append(formatBytes(backup.totalBytes()))
+                        .append(" | +").append(formatBytes(backup.addedBytes()))
+                        .append("\n");
+                }
+                context.sendMessage(Message.raw(builder.toString()));
+                return null;
+            });
+        }
+    }
+
+    private static final class RestoreCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+        private final RequiredArg<String> idArg;
+
+        private RestoreCommand(ParkourManager parkourManager) {
+            super("restore", "Stage a backup to replace the parkour data on the next server start");
+            this.parkourManager = parkourManager;
+            this.idArg = withRequiredArg("backup", "Backup ID from /parkour backups", ArgTypes.STRING);
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            String id = idArg.get(context);
+            return parkourManager.stageRestore(id).handle((files, error) -> {
+                context.sendMessage(Message.raw(error != null
+                    ? "Restore failed: " + rootMessage(error)
+                    : "Backup " + id + " verified and staged (" + files + " files). Restart the server to apply it;"
+                        + " replaced files are kept under backups/pre-restore."));
+                return null;
+            });
+        }
+    }
+
+    private static final class ReloadCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+
+        private ReloadCommand(ParkourManager parkourManager) {
+            super("reload", "Reload tracks from storage without restarting");
+            this.parkourManager = parkourManager;
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            return parkourManager.reloadTracks().handle((result, error) -> {
+                String message;
+                if (error != null) {
+                    message = "Reload failed: " + rootMessage(error);
+                } else if (!result.problems().isEmpty()) {
+                    message = "Tracks not reloaded:\n" + String.join("\n", result.problems());
+                } else if (!result.applied()) {
+                    message = "Tracks are already up to date.";
+                } else {
+                    message = "Tracks reloaded: " + result.added() + " added, " + result.changed() + " changed, "
+                        + result.removed() + " removed. Runs in progress finish on the old layout.";
+                }
+                context.sendMessage(Message.raw(message));
+                return null;
+            });
+        }
+    }
+
+    private static final class ImportCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+        private final RequiredArg<String> packArg;
+
+        private ImportCommand(ParkourManager parkourManager) {
+            super("import", "Add every track from a pack file in track-packs/");
+            this.parkourManager = parkourManager;
+            this.packArg = withRequiredArg("pack", "File name in track-packs/, .tracks may be omitted", ArgTypes.STRING);
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            String pack = packArg.get(context);
+            return parkourManager.importTracks(pack).handle((result, error) -> {
+                String message;
+                if (error != null) {
+                    message = "Import failed: " + rootMessage(error);
+                } else if (result.rejected() > 0) {
+                    message = "Nothing imported, " + result.rejected() + " invalid lines:\n"
+                        + String.join("\n", result.problems());
+                } else if (result.imported() == 0) {
+                    message = "No tracks in " + pack + ".";
+                } else {
+                    message = "Imported " + result.imported() + " tracks as IDs " + result.firstId() + "-"
+                        + (result.firstId() + result.imported() - 1) + ".";
+                }
+                context.sendMessage(Message.raw(message));
+                return null;
+            });
+        }
+    }
+
+    private static final class ExportCommand extends AbstractCommand {
+        private final ParkourManager parkourManager;
+        private final RequiredArg<String> packArg;
+
+        private ExportCommand(ParkourManager parkourManager) {
+            super("export", "Write every track to a pack file in track-packs/");
+            this.parkourManager = parkourManager;
+            this.packArg = withRequiredArg("pack", "File name in track-packs/, .tracks may be omitted", ArgTypes.STRING);
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected CompletableFuture<Void> execute(CommandContext context) {
+            String pack = packArg.get(context);
+            return parkourManager.exportTracks(pack).handle((count, error) -> {
+                context.sendMessage(Message.raw(error != null
+                    ? "Export failed: " + rootMessage(error)
+                    : "Exported " + count + " tracks to track-packs/" + pack + "."));
+                return null;
+            });
+        }
+    }
+
+    private static final class GhostCommand extends AbstractPlayerCommand {
+        private final ParkourManager parkourManager;
+        private final RequiredArg<Integer> idArg;
+
+        private GhostCommand(ParkourManager parkourManager) {
+            super("ghost", "Follow the fastest stored run of a track");
+            this.parkourManager = parkourManager;
+            this.idArg = withRequiredArg("id", "Track ID", ArgTypes.INTEGER);
+        }
+
+        @Override
+        protected void execute(CommandContext context, Store<EntityStore> store, Ref<EntityStore> playerRef, PlayerRef playerMeta, World world) {
+            Player player = store.getComponent(playerRef, Player.getComponentType());
+            if (player == null) {
+                context.sendMessage(Message.raw("Could not resolve player entity."));
+                return;
+            }
+            parkourManager.playGhost(player, idArg.get(context), null, false);
+        }
+    }
+
+    private static final class GhostStopCommand extends AbstractPlayerCommand {
+        private final ParkourManager parkourManager;
+
+        private GhostStopCommand(ParkourManager parkourManager) {
+            super("ghoststop", "Stop ghost playback");
+            this.parkourManager = parkourManager;
+        }
+
+        @Override
+        protected void execute(CommandContext context, Store<EntityStore> store, Ref<EntityStore> playerRef, PlayerRef playerMeta, World world) {
+            Player player = store.getComponent(playerRef, Player.getComponentType());
+            if (player == null) {
+                context.sendMessage(Message.raw("Could not resolve player entity."));
+                return;
+            }
+            context.sendMessage(Message.raw(parkourManager.stopGhost(player) ? "Ghost playback stopped." : "No ghost is playing."));
+        }
+    }
+
+    private static final class TraceCommand extends AbstractPlayerCommand {
+        private final ParkourManager parkourManager;
+        private final RequiredArg<Integer> idArg;
+        private final RequiredArg<String> playerArg;
+
+        private TraceCommand(ParkourManager parkourManager) {
+            super("trace", "Review a player's stored PB run on a track");
+            this.parkourManager = parkourManager;
+            this.idArg = withRequiredArg("id", "Track ID", ArgTypes.INTEGER);
+            this.playerArg = withRequiredArg("player", "Player UUID", ArgTypes.STRING);
+            requirePermission("server.admin");
+        }
+
+        @Override
+        protected void execute(CommandContext context, Store<EntityStore> store, Ref<EntityStore> playerRef, PlayerRef playerMeta, World world) {
+            Player player = store.getComponent(playerRef, Player.getComponentType());
+            if (player == null) {
+                context.sendMessage(Message.raw("Could not resolve player entity."));
+                return;
+            }
+            UUID runner;
+            try {
+                runner = UUID.fromString(playerArg.get(context));
+            } catch (IllegalArgumentException e) {
+                context.sendMessage(Message.raw("Not a player UUID: " + playerArg.get(context)));
+                return;
+            }
+            parkourManager.playGhost(player, idArg.get(context), runner, true);
+        }
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage() == null ? cause.getClass().getSimpleName() : cause.getMessage();
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) {
+            return bytes + " B";
+        }
+        if (bytes < 1024 * 1024) {
+            return String.format(java.util.Locale.ROOT, "%.1f KB", bytes / 1024.0);
+        }
+        return String.format(java.util.Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
     private static final class UpgradeCommand extends AbstractCommand {
         private final ParkourManager parkourManager;
 
@@ -168,31 +557,31 @@ public final class ParkourRootCommand extends AbstractPlayerCommand {
         }
 
         @Override
-        protected java.util.concurrent.CompletableFuture<Void> execute(CommandContext context) {
+        protected CompletableFuture<Void> execute(CommandContext context) {
             if (!context.isPlayer()) {
                 context.sendMessage(Message.raw("Player only command."));
-                return java.util.concurrent.CompletableFuture.completedFuture(null);
+                return CompletableFuture.completedFuture(null);
             }
 
             UUID uuid = context.sender().getUuid();
-            PlayerProgress progress = parkourManager.getProgress(uuid);
-            BigNumber next1 = parkourManager.getUpgradeService().costForOption(1, progress.option1);
-            BigNumber next2 = parkourManager.getUpgradeService().costForOption(2, progress.option2);
-            BigNumber next3 = parkourManager.getUpgradeService().costForOption(3, progress.option3);
-            BigNumber next4 = parkourManager.getUpgradeService().costForOption(4, progress.option4);
-            BigNumber next5 = parkourManager.getUpgradeService().costForOption(5, progress.option5);
-            BigNumber next6 = parkourManager.getUpgradeService().costForOption(6, progress.option6);
-
-            String msg = "Points=" + BigNumberFormatter.formatBigNumber(progress.points)
-                + " | L1=" + progress.option1 + " (" + BigNumberFormatter.formatBigNumber(next1) + ")"
-                + " | L2=" + progress.option2 + " (" + BigNumberFormatter.formatBigNumber(next2) + ")"
-                + " | L3=" + progress.option3 + " (" + BigNumberFormatter.formatBigNumber(next3) + ")"
-                + " | L4=" + progress.option4 + " (" + BigNumberFormatter.formatBigNumber(next4) + ")"
-                + " | L5=" + progress.option5 + " (" + BigNumberFormatter.formatBigNumber(next5) + ")"
-                + " | L6=" + progress.option6 + " (" + BigNumberFormatter.formatBigNumber(next6) + ")";
-
-            context.sendMessage(Message.raw(msg));
-            return java.util.concurrent.CompletableFuture.completedFuture(null);
+            return reply(parkourManager, context, () -> {
+                // The forecast reads the progress once; the idle payout may update it while the reply is built.
+                UpgradeService.Forecast forecast = parkourManager.getUpgradeService().forecast(parkourManager.getProgress(uuid));
+
+                StringBuilder builder = new StringBuilder("Points=").append(BigNumberFormatter.formatBigNumber(forecast.points()))
+                    .append(" (+").append(BigNumberFormatter.formatBigNumber(forecast.incomePerSecond())).append("/s)");
+                for (int i = 0; i < forecast.options().size(); i++) {
+                    UpgradeService.Row row = forecast.options().get(i);
+                    builder.append(" | L").append(i + 1).append('=').append(row.level())
+                        .append(" (").append(BigNumberFormatter.formatBigNumber(row.cost()))
+                        .append(", ").append(BigNumberFormatter.formatEta(row.secondsToAfford())).append(')');
+                }
+                UpgradeService.Row voidPoint = forecast.voidPoint();
+                builder.append(" | VP=").append(voidPoint.level())
+                    .append(" (").append(BigNumberFormatter.formatBigNumber(voidPoint.cost()))
+                    .append(", ").append(BigNumberFormatter.formatEta(voidPoint.secondsToAfford())).append(')');
+                return builder.toString();
+            });
         }
     }
 
@@ -38,6 +38,11 @@ public final class BigNumber implements Comparable<BigNumber> {
         return new BigNumber(mag, layer);
     }
 
+    // For MutableBigNumber, whose values are already normalized; skips a second normalize that could move the last bit.
+    static BigNumber normalized(double mag, long layer) {
+        return new BigNumber(mag, layer, true);
+    }
+
     public double mag() {
         return mag;
     }
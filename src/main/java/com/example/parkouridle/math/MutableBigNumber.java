@@ -0,0 +1,209 @@
+package com.example.parkouridle.math;
+
+/**
+ * Allocation-free register for batch kernels over {@link BigNumber} columns. Every operation repeats the
+ * floating-point steps of the matching {@link BigNumber} method, so results are bit-identical.
+ */
+public final class MutableBigNumber {
+
+    private static final double LAYER_0_TO_1_THRESHOLD = Math.pow(10.0, 15.95);
+    private static final double EPSILON = 1e-12;
+
+    private double mag;
+    private long layer;
+    // Second operand for multiply; created on first use.
+    private MutableBigNumber scratch;
+
+    public double mag() {
+        return mag;
+    }
+
+    public long layer() {
+        return layer;
+    }
+
+    public MutableBigNumber set(double mag, long layer) {
+        if (Double.isNaN(mag) || Double.isInfinite(mag)) {
+            this.mag = 0.0;
+            this.layer = 0;
+            return this;
+        }
+        double m = mag;
+        long l = Math.max(0, layer);
+        if (l == 0) {
+            if (m < 0.0) {
+                m = 0.0;
+            }
+            if (m >= LAYER_0_TO_1_THRESHOLD) {
+                l = 1;
+                m = Math.log10(m);
+            }
+            this.mag = m;
+            this.layer = l;
+            return this;
+        }
+        if (m < 0.0) {
+            m = 0.0;
+        }
+        while (l > 0 && m < 15.95) {
+            l -= 1;
+            m = Math.pow(10.0, m);
+            if (l == 0 && m >= LAYER_0_TO_1_THRESHOLD) {
+                l = 1;
+                m = Math.log10(m);
+                break;
+            }
+        }
+        this.mag = m;
+        this.layer = l;
+        return this;
+    }
+
+    public MutableBigNumber set(BigNumber value) {
+        this.mag = value.mag();
+        this.layer = value.layer();
+        return this;
+    }
+
+    public BigNumber toBigNumber() {
+        return BigNumber.normalized(mag, layer);
+    }
+
+    public boolean isZero() {
+        return layer == 0 && mag <= EPSILON;
+    }
+
+    public int compareTo(double otherMag, long otherLayer) {
+        if (layer != otherLayer) {
+            return Long.compare(layer, otherLayer);
+        }
+        return Double.compare(mag, otherMag);
+    }
+
+    public MutableBigNumber log10() {
+        if (isZero()) {
+            return set(0.0, 0);
+        }
+        if (layer == 0) {
+            return set(Math.log10(mag), 0);
+        }
+        return set(mag, layer - 1);
+    }
+
+    public MutableBigNumber pow10() {
+        if (layer == 0) {
+            return set(Math.pow(10.0, mag), 0);
+        }
+        return set(mag, layer + 1);
+    }
+
+    public MutableBigNumber add(double otherMag, long otherLayer) {
+        if (isZero()) {
+            this.mag = otherMag;
+            this.layer = otherLayer;
+            return this;
+        }
+        if (otherLayer == 0 && otherMag <= EPSILON) {
+            return this;
+        }
+
+        double aMag = mag;
+        long aLayer = layer;
+        double bMag = otherMag;
+        long bLayer = otherLayer;
+        if (compareTo(otherMag, otherLayer) < 0) {
+            aMag = otherMag;
+            aLayer = otherLayer;
+            bMag = mag;
+            bLayer = layer;
+        }
+
+        long layerDiff = aLayer - bLayer;
+        if (layerDiff >= 2) {
+            this.mag = aMag;
+            this.layer = aLayer;
+            return this;
+        }
+        if (aLayer == 0 && bLayer == 0) {
+            return set(aMag + bMag, 0);
+        }
+        if (aLayer == 1 && bLayer == 1) {
+            return set(aMag + Math.log10(1.0 + Math.pow(10.0, bMag - aMag)), 1);
+        }
+        if (aLayer == 1 && bLayer == 0) {
+            if (bMag <= 0.0) {
+                this.mag = aMag;
+                this.layer = aLayer;
+                return this;
+            }
+            double bLog = Math.log10(bMag);
+            return set(aMag + Math.log10(1.0 + Math.pow(10.0, bLog - aMag)), 1);
+        }
+        this.mag = aMag;
+        this.layer = aLayer;
+        return this;
+    }
+
+    public MutableBigNumber multiply(double otherMag, long otherLayer) {
+        if (isZero() || (otherLayer == 0 && otherMag <= EPSILON)) {
+            return set(0.0, 0);
+        }
+        if ((layer == 0 && mag < 0.0) || (otherLayer == 0 && otherMag < 0.0)) {
+            return set(0.0, 0);
+        }
+        if (layer == 0 && otherLayer == 0) {
+            return set(mag * otherMag, 0);
+        }
+        if (scratch == null) {
+            scratch = new MutableBigNumber();
+        }
+        scratch.set(otherMag, otherLayer).log10();
+        return log10().add(scratch.mag, scratch.layer).pow10();
+    }
+
+    public MutableBigNumber pow(double exponent) {
+        if (exponent == 0.0) {
+            return set(1.0, 0);
+        }
+        if (isZero()) {
+            return set(0.0, 0);
+        }
+        if (exponent < 0.0) {
+            return set(0.0, 0);
+        }
+        if (scratch == null) {
+            scratch = new MutableBigNumber();
+        }
+        scratch.set(exponent, 0);
+        return log10().multiply(scratch.mag, scratch.layer).pow10();
+    }
+
+    public MutableBigNumber layerAdd(double add) {
+        if (Math.abs(add) <= EPSILON) {
+            return this;
+        }
+
+        long integer = (long) Math.floor(add);
+        double fractional = add - integer;
+
+        long newLayer = this.layer + integer;
+        double newMag = this.mag;
+
+        if (fractional > EPSILON) {
+            if (newLayer <= 0) {
+                double safe = Math.max(newMag, 1.0000001);
+                newLayer = 1;
+                newMag = Math.log10(safe) + fractional;
+            } else {
+                newMag += fractional;
+            }
+        }
+
+        if (newLayer < 0) {
+            newLayer = 0;
+            newMag = 0.0;
+        }
+
+        return set(newMag, newLayer);
+    }
+}
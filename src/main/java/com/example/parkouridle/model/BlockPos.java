@@ -0,0 +1,56 @@
+package com.example.parkouridle.model;
+
+/**
+ * Packs block coordinates into one long: x in the upper 26 bits, z in the next 26, y in the low 12.
+ */
+public final class BlockPos {
+
+    /**
+     * Collides only with (-33554432, 0, 0), the outermost representable x.
+     */
+    public static final long NONE = Long.MIN_VALUE;
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+
+    private BlockPos() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static boolean inRange(int x, int y, int z) {
+        long xzLimit = XZ_MASK >> 1;
+        long yLimit = Y_MASK >> 1;
+        return Math.abs((long) x) <= xzLimit && Math.abs((long) z) <= xzLimit && y >= -yLimit - 1 && y <= yLimit;
+    }
+
+    public static long pack(TrackVector3 vec) {
+        return vec == null ? NONE : pack(vec.x, vec.y, vec.z);
+    }
+
+    public static int x(long packed) {
+        return (int) (packed >> X_SHIFT);
+    }
+
+    public static int y(long packed) {
+        return (int) (packed << (Long.SIZE - Y_BITS) >> (Long.SIZE - Y_BITS));
+    }
+
+    public static int z(long packed) {
+        return (int) (packed << XZ_BITS >> (Long.SIZE - XZ_BITS));
+    }
+
+    public static TrackVector3 toTrackVector3(long packed) {
+        return packed == NONE ? null : new TrackVector3(x(packed), y(packed), z(packed));
+    }
+
+    public static String toString(long packed) {
+        return x(packed) + "," + y(packed) + "," + z(packed);
+    }
+}
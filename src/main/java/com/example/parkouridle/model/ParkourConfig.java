@@ -0,0 +1,39 @@
+package com.example.parkouridle.model;
+
+public final class ParkourConfig {
+    // "json" keeps data in files under the plugin directory; "h2" uses an embedded single-file database.
+    public String storageBackend = "json";
+    // How often the run timer HUD is refreshed; every runner gets at most one update per interval.
+    public long hudIntervalMillis = 200;
+    // Granularity of the displayed time; a HUD update is skipped until the shown value changes.
+    public long hudResolutionMillis = 100;
+    // Entries kept per track in each daily/weekly/monthly board; the slowest are evicted past this.
+    public int windowedBoardSize = 500;
+    // Usernames remembered for leaderboards; the least recently seen players are forgotten past this.
+    public int nameCacheSize = 10_000;
+    // Minutes between incremental backups under backups/; 0 turns periodic backups off.
+    public int backupIntervalMinutes = 60;
+    // Backups kept; older ones and the data only they reference are deleted.
+    public int backupRetention = 48;
+    // Directory shared with other servers for exchanging personal bests; empty keeps leaderboards local.
+    public String leaderboardSyncDirectory = "";
+    // Seconds between sending local bests to, and merging remote ones from, the sync directory.
+    public int leaderboardSyncSeconds = 5;
+    // Reload tracks.json whenever it is edited on disk (file store only); "/parkour reload" works either way.
+    public boolean watchTracksFile = false;
+    // Time one player scan may take (scans run every 200 ms); players left over go first next scan. 0 = no limit.
+    public long tickBudgetMillis = 25;
+    // Port of the read-only JSON endpoint for websites and dashboards; 0 leaves it off.
+    public int httpPort = 0;
+    // Address the endpoint listens on; only local processes can reach it unless this is changed.
+    public String httpBindAddress = "127.0.0.1";
+    // Rows served per track leaderboard.
+    public int httpTopSize = 100;
+    // Bytes of position samples kept per run (about 5 bytes per block moved); longer runs keep their first part.
+    public int traceBytesPerRun = 16_384;
+    // PB traces kept per track for ghost playback, fastest first.
+    public int tracesPerTrack = 100;
+
+    public ParkourConfig() {
+    }
+}
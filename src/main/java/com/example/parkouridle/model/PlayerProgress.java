@@ -1,9 +1,8 @@
 package com.example.parkouridle.model;
 
 import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.util.IntLongMap;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 
 public final class PlayerProgress {
@@ -16,7 +15,11 @@ public final class PlayerProgress {
     public int option4;
     public int option5;
     public int option6;
-    public Map<Integer, Long> personalBestByTrack = new HashMap<>();
+    public IntLongMap personalBestByTrack = new IntLongMap();
+    // Best elapsed time at each checkpoint, keyed by Track.splitKey(trackId, ordinal).
+    public IntLongMap bestSplits = new IntLongMap();
+    // PB time that drives the idle payout interval; 0 until the first PB.
+    public long idlePbMillis;
 
     public PlayerProgress() {
     }
@@ -24,4 +27,20 @@ public final class PlayerProgress {
     public PlayerProgress(UUID uuid) {
         this.uuid = uuid;
     }
+
+    public PlayerProgress copy() {
+        PlayerProgress copy = new PlayerProgress(uuid);
+        copy.points = points;
+        copy.currentVp = currentVp;
+        copy.option1 = option1;
+        copy.option2 = option2;
+        copy.option3 = option3;
+        copy.option4 = option4;
+        copy.option5 = option5;
+        copy.option6 = option6;
+        copy.personalBestByTrack = personalBestByTrack.copy();
+        copy.bestSplits = bestSplits.copy();
+        copy.idlePbMillis = idlePbMillis;
+        return copy;
+    }
 }
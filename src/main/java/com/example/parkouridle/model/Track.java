@@ -1,17 +1,28 @@
 package com.example.parkouridle.model;
 
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.Set;
 
 public final class Track {
+    // Checkpoint ordinals share an int with the track id in splitKey.
+    public static final int MAX_CHECKPOINTS = 1024;
+
     public int id;
+    // Null for tracks saved before worlds were recorded; those trigger in every world.
+    public String world;
     public TrackVector3 start;
     public List<TrackVector3> checkpoints = new ArrayList<>();
     public TrackVector3 finish;
-    public Map<UUID, Long> leaderboard = new LinkedHashMap<>();
+
+    // Packed copies of the trigger blocks for the tick loop; derived, never persisted.
+    public transient long startBlock = BlockPos.NONE;
+    public transient long finishBlock = BlockPos.NONE;
+    public transient long[] checkpointBlocks = new long[0];
+    // Open-addressing block -> ordinal table over checkpointBlocks; slots hold ordinal + 1, 0 marks empty.
+    private transient long[] checkpointSlots = new long[1];
+    private transient int[] checkpointOrdinals = new int[1];
 
     public Track() {
     }
@@ -21,5 +32,73 @@ public final class Track {
         this.start = start;
         this.checkpoints = checkpoints;
         this.finish = finish;
+        indexBlocks();
+    }
+
+    public void indexBlocks() {
+        startBlock = BlockPos.pack(start);
+        finishBlock = BlockPos.pack(finish);
+        List<TrackVector3> source = checkpoints == null ? List.of() : checkpoints;
+        long[] packed = new long[source.size()];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = BlockPos.pack(source.get(i));
+        }
+        checkpointBlocks = packed;
+
+        int capacity = Integer.highestOneBit(Math.max(1, packed.length * 2 - 1)) << 1;
+        long[] slots = new long[capacity];
+        int[] ordinals = new int[capacity];
+        for (int i = 0; i < packed.length; i++) {
+            int idx = slotOf(packed[i], capacity - 1);
+            while (ordinals[idx] != 0 && slots[idx] != packed[i]) {
+                idx = (idx + 1) & (capacity - 1);
+            }
+            if (ordinals[idx] == 0) {
+                slots[idx] = packed[i];
+                ordinals[idx] = i + 1;
+            }
+        }
+        checkpointSlots = slots;
+        checkpointOrdinals = ordinals;
+    }
+
+    public int checkpointIndexOf(long block) {
+        long[] slots = checkpointSlots;
+        int[] ordinals = checkpointOrdinals;
+        int mask = slots.length - 1;
+        int idx = slotOf(block, mask);
+        int ordinal;
+        while ((ordinal = ordinals[idx]) != 0) {
+            if (slots[idx] == block) {
+                return ordinal - 1;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Index of the first checkpoint on the same block as an earlier one, or -1.
+     */
+    public static int firstRepeatedCheckpoint(List<TrackVector3> checkpoints) {
+        Set<TrackVector3> seen = new HashSet<>();
+        for (int i = 0; i < checkpoints.size(); i++) {
+            if (!seen.add(checkpoints.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Track id in the upper bits, checkpoint ordinal in the low 10.
+     */
+    public static int splitKey(int trackId, int checkpointIndex) {
+        return (trackId << 10) | (checkpointIndex & 0x3FF);
+    }
+
+    private static int slotOf(long block, int mask) {
+        long h = block * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
     }
 }
@@ -3,8 +3,6 @@ package com.example.parkouridle.model;
 import com.hypixel.hytale.math.vector.Vector3d;
 import com.hypixel.hytale.math.vector.Vector3i;
 
-import java.util.Objects;
-
 public final class TrackVector3 {
     public int x;
     public int y;
@@ -37,6 +35,6 @@ public final class TrackVector3 {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y, z);
+        return 31 * (31 * x + y) + z;
     }
 }
@@ -0,0 +1,385 @@
+package com.example.parkouridle.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Incremental, content-addressed backups of the data directory under {@code backups/}. A restore is staged
+ * while the server runs and applied by {@link #applyPendingRestore(Path)} on the next start.
+ */
+public final class BackupService {
+
+    private static final String HEADER = "parkouridle-backup 1";
+    private static final String MANIFEST_EXTENSION = ".manifest";
+    private static final DateTimeFormatter ID_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss").withZone(ZoneOffset.UTC);
+
+    private final Path dataDir;
+    private final ParkourStorage storage;
+    private final Path backupDir;
+    private final Path objectsDir;
+    private final Path snapshotsDir;
+    private final int retention;
+    private final ExecutorService executor;
+
+    public BackupService(Path dataDir, ParkourStorage storage, int retention) {
+        this.dataDir = dataDir;
+        this.storage = storage;
+        this.backupDir = dataDir.resolve("backups");
+        this.objectsDir = backupDir.resolve("objects");
+        this.snapshotsDir = backupDir.resolve("snapshots");
+        this.retention = Math.max(1, retention);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ParkourIdle-Backup");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<Summary> snapshotAsync() {
+        return CompletableFuture.supplyAsync(this::snapshot, executor);
+    }
+
+    public CompletableFuture<List<Summary>> listAsync() {
+        return CompletableFuture.supplyAsync(this::list, executor);
+    }
+
+    public CompletableFuture<Integer> stageRestoreAsync(String id) {
+        return CompletableFuture.supplyAsync(() -> stageRestore(id), executor);
+    }
+
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized Summary snapshot() {
+        Path export = backupDir.resolve("export");
+        try {
+            deleteTree(export);
+            storage.exportForBackup(export);
+            Map<String, Path> files = new LinkedHashMap<>();
+            for (Path file : dataFiles()) {
+                files.put(relative(file), file);
+            }
+            for (Path file : dataFiles(export)) {
+                files.put(relative(export, file), file);
+            }
+
+            Map<String, Entry> previous = latestManifest();
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            long addedBytes = 0;
+            for (Map.Entry<String, Path> source : files.entrySet()) {
+                String path = source.getKey();
+                Path file = source.getValue();
+                long size = Files.size(file);
+                long modified = Files.getLastModifiedTime(file).toMillis();
+                Entry known = previous.get(path);
+                if (known != null && known.size == size && known.modified == modified && Files.exists(objectPath(known.hash))) {
+                    entries.put(path, known);
+                    continue;
+                }
+                byte[] bytes = Files.readAllBytes(file);
+                String hash = sha256(bytes);
+                Path object = objectPath(hash);
+                if (!Files.exists(object)) {
+                    SnapshotWriter.writeAtomically(object, out -> {
+                        DeflaterOutputStream deflater = new DeflaterOutputStream(out);
+                        deflater.write(bytes);
+                        deflater.finish();
+                    });
+                    addedBytes += Files.size(object);
+                }
+                entries.put(path, new Entry(hash, bytes.length, modified));
+            }
+
+            long created = System.currentTimeMillis();
+            String id = uniqueId(created);
+            StringBuilder manifest = new StringBuilder(HEADER).append(' ').append(created).append(' ').append(addedBytes).append('\n');
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                manifest.append(value.hash).append(' ').append(value.size).append(' ').append(value.modified)
+                    .append(' ').append(entry.getKey()).append('\n');
+            }
+            byte[] manifestBytes = manifest.toString().getBytes(StandardCharsets.UTF_8);
+            SnapshotWriter.writeAtomically(snapshotsDir.resolve(id + MANIFEST_EXTENSION), out -> out.write(manifestBytes));
+            prune();
+            deleteTree(export);
+            return new Summary(id, created, entries.size(), entries.values().stream().mapToLong(Entry::size).sum(), addedBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write backup", e);
+        }
+    }
+
+    private synchronized List<Summary> list() {
+        List<Summary> summaries = new ArrayList<>();
+        for (Path manifest : manifests()) {
+            String id = idOf(manifest);
+            Manifest parsed = readManifest(manifest);
+            long total = parsed.entries.values().stream().mapToLong(Entry::size).sum();
+            summaries.add(new Summary(id, parsed.created, parsed.entries.size(), total, parsed.addedBytes));
+        }
+        summaries.sort(Comparator.comparing(Summary::id).reversed());
+        return summaries;
+    }
+
+    private synchronized int stageRestore(String id) {
+        Path manifestFile = snapshotsDir.resolve(id + MANIFEST_EXTENSION);
+        if (!id.matches("[0-9A-Za-z-]+") || !Files.exists(manifestFile)) {
+            throw new IllegalArgumentException("Unknown backup: " + id);
+        }
+        Manifest manifest = readManifest(manifestFile);
+        Path staging = backupDir.resolve("restore");
+        Path marker = backupDir.resolve("restore.pending");
+        try {
+            Files.deleteIfExists(marker);
+            deleteTree(staging);
+            for (Map.Entry<String, Entry> entry : manifest.entries.entrySet()) {
+                byte[] bytes = readObject(entry.getValue().hash);
+                if (!sha256(bytes).equals(entry.getValue().hash)) {
+                    throw new IOException("Backup object for " + entry.getKey() + " is corrupt");
+                }
+                SnapshotWriter.writeAtomically(staging.resolve(entry.getKey()), out -> out.write(bytes));
+            }
+            // Written last: only a fully staged and verified restore is ever applied.
+            byte[] markerBytes = Files.readAllBytes(manifestFile);
+            SnapshotWriter.writeAtomically(marker, out -> out.write(markerBytes));
+            return manifest.entries.size();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not stage backup " + id, e);
+        }
+    }
+
+    /**
+     * Safe to repeat after a crash mid-way. Returns -1 if nothing was pending.
+     */
+    public static int applyPendingRestore(Path dataDir) {
+        Path backupDir = dataDir.resolve("backups");
+        Path marker = backupDir.resolve("restore.pending");
+        if (!Files.exists(marker)) {
+            return -1;
+        }
+        Path staging = backupDir.resolve("restore");
+        Path aside = backupDir.resolve("pre-restore");
+        Manifest manifest = readManifest(marker);
+        try {
+            // Files the snapshot does not contain go aside; re-running finds none left.
+            for (Path file : dataFiles(dataDir)) {
+                String path = relative(dataDir, file);
+                if (!manifest.entries.containsKey(path)) {
+                    moveReplacing(file, aside.resolve(path));
+                }
+            }
+            // Staged files are moved in one by one; re-running skips the ones already moved.
+            int restored = 0;
+            for (String path : manifest.entries.keySet()) {
+                Path staged = staging.resolve(path);
+                if (!Files.exists(staged)) {
+                    continue;
+                }
+                Path live = dataDir.resolve(path);
+                if (Files.exists(live)) {
+                    moveReplacing(live, aside.resolve(path));
+                }
+                moveReplacing(staged, live);
+                restored++;
+            }
+            deleteTree(staging);
+            Files.delete(marker);
+            return restored;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not apply the staged backup restore", e);
+        }
+    }
+
+    private List<Path> dataFiles() throws IOException {
+        return dataFiles(dataDir);
+    }
+
+    // Everything under the data directory except backups, temp files and the live H2 database (exported instead).
+    private static List<Path> dataFiles(Path dataDir) throws IOException {
+        if (!Files.isDirectory(dataDir)) {
+            return List.of();
+        }
+        Path backups = dataDir.resolve("backups");
+        try (Stream<Path> walk = Files.walk(dataDir)) {
+            return walk
+                .filter(Files::isRegularFile)
+                .filter(file -> !file.startsWith(backups))
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return !name.endsWith(".tmp") && !name.endsWith(".mv.db") && !name.endsWith(".trace.db");
+                })
+                .sorted()
+                .toList();
+        }
+    }
+
+    private void prune() throws IOException {
+        List<Path> manifests = manifests();
+        manifests.sort(Comparator.comparing(BackupService::idOf));
+        for (int i = 0; i < manifests.size() - retention; i++) {
+            Files.delete(manifests.get(i));
+        }
+
+        Set<String> referenced = new HashSet<>();
+        for (Path manifest : manifests()) {
+            for (Entry entry : readManifest(manifest).entries.values()) {
+                referenced.add(entry.hash);
+            }
+        }
+        if (!Files.isDirectory(objectsDir)) {
+            return;
+        }
+        List<Path> unreferenced;
+        try (Stream<Path> walk = Files.walk(objectsDir)) {
+            unreferenced = walk
+                .filter(Files::isRegularFile)
+                .filter(object -> !referenced.contains(object.getFileName().toString()))
+                .toList();
+        }
+        for (Path object : unreferenced) {
+            Files.delete(object);
+        }
+    }
+
+    private Map<String, Entry> latestManifest() {
+        List<Path> manifests = manifests();
+        if (manifests.isEmpty()) {
+            return Map.of();
+        }
+        manifests.sort(Comparator.comparing(BackupService::idOf));
+        return readManifest(manifests.get(manifests.size() - 1)).entries;
+    }
+
+    private List<Path> manifests() {
+        if (!Files.isDirectory(snapshotsDir)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> files = Files.list(snapshotsDir)) {
+            return files
+                .filter(file -> file.getFileName().toString().endsWith(MANIFEST_EXTENSION))
+                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list backups", e);
+        }
+    }
+
+    private String uniqueId(long created) {
+        String base = ID_FORMAT.format(Instant.ofEpochMilli(created));
+        String id = base;
+        for (int n = 1; Files.exists(snapshotsDir.resolve(id + MANIFEST_EXTENSION)); n++) {
+            id = base + "-" + n;
+        }
+        return id;
+    }
+
+    private byte[] readObject(String hash) throws IOException {
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(objectPath(hash)))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.transferTo(out);
+            return out.toByteArray();
+        }
+    }
+
+    private Path objectPath(String hash) {
+        return objectsDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private String relative(Path file) {
+        return relative(dataDir, file);
+    }
+
+    private static String relative(Path dataDir, Path file) {
+        return dataDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static String idOf(Path manifest) {
+        String name = manifest.getFileName().toString();
+        return name.substring(0, name.length() - MANIFEST_EXTENSION.length());
+    }
+
+    private static Manifest readManifest(Path file) {
+        try {
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            if (lines.isEmpty() || !lines.get(0).startsWith(HEADER + " ")) {
+                throw new IOException("Not a backup manifest: " + file.getFileName());
+            }
+            String[] header = lines.get(0).split(" ");
+            Map<String, Entry> entries = new HashMap<>();
+            for (int i = 1; i < lines.size(); i++) {
+                String[] parts = lines.get(i).split(" ", 4);
+                if (parts.length == 4) {
+                    entries.put(parts[3], new Entry(parts[0], Long.parseLong(parts[1]), Long.parseLong(parts[2])));
+                }
+            }
+            return new Manifest(Long.parseLong(header[2]), Long.parseLong(header[3]), entries);
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Could not read backup manifest " + file.getFileName(), e);
+        }
+    }
+
+    private static void moveReplacing(Path from, Path to) throws IOException {
+        Files.createDirectories(to.getParent());
+        Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root)) {
+            return;
+        }
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(root)) {
+            paths = walk.sorted(Comparator.reverseOrder()).toList();
+        }
+        for (Path path : paths) {
+            Files.delete(path);
+        }
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Entry(String hash, long size, long modified) {
+    }
+
+    private record Manifest(long created, long addedBytes, Map<String, Entry> entries) {
+    }
+
+    public record Summary(String id, long createdMillis, int files, long totalBytes, long addedBytes) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.util.UuidLongMap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spreads per-player work over passes with a time budget, longest-waiting player first.
+ */
+final class BudgetedTicker<T> {
+
+    private static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // Queued now but not in the previous pass: first in line, and the time away does not count as staleness.
+    private static final long RETURNED = Long.MIN_VALUE;
+
+    private final Function<T, UUID> idOf;
+    private final List<T> priority = new ArrayList<>();
+    private final List<T> rest = new ArrayList<>();
+    // Guarded by this: System.nanoTime() of each player's last visit, and the last pass each player was queued in.
+    private final UuidLongMap lastVisit = new UuidLongMap();
+    private final UuidLongMap lastQueued = new UuidLongMap();
+    private final Comparator<T> longestWaitingFirst;
+    private long pass;
+    private long passWorstNanos;
+    private long windowStart = System.nanoTime();
+    private long windowWorstNanos;
+    private long previousWindowWorstNanos;
+    private volatile long budgetHits;
+    private volatile long worstStalenessNanos;
+
+    BudgetedTicker(Function<T, UUID> idOf) {
+        this.idOf = idOf;
+        this.longestWaitingFirst = Comparator.comparingLong(item -> lastVisit.getOrDefault(idOf.apply(item), RETURNED));
+    }
+
+    void add(T item, boolean urgent) {
+        (urgent ? priority : rest).add(item);
+    }
+
+    synchronized int run(long budgetNanos, Consumer<T> action) {
+        long start = System.nanoTime();
+        long deadline = budgetNanos > 0 ? start + budgetNanos : Long.MAX_VALUE;
+        pass++;
+        passWorstNanos = 0L;
+        try {
+            order(priority);
+            order(rest);
+            int visited = visit(priority, deadline, action);
+            if (visited == priority.size()) {
+                visited += visit(rest, deadline, action);
+            } else {
+                waiting(rest, 0, System.nanoTime());
+            }
+            if (visited < priority.size() + rest.size()) {
+                budgetHits++;
+            }
+            publishStaleness(System.nanoTime());
+            return visited;
+        } finally {
+            priority.clear();
+            rest.clear();
+        }
+    }
+
+    synchronized void forget(UUID uuid) {
+        lastVisit.remove(uuid);
+        lastQueued.remove(uuid);
+    }
+
+    long budgetHits() {
+        return budgetHits;
+    }
+
+    long worstStalenessMillis() {
+        return worstStalenessNanos / 1_000_000L;
+    }
+
+    private void order(List<T> items) {
+        for (T item : items) {
+            UUID uuid = idOf.apply(item);
+            if (lastQueued.getOrDefault(uuid, -1L) != pass - 1) {
+                lastVisit.put(uuid, RETURNED);
+            }
+            lastQueued.put(uuid, pass);
+        }
+        items.sort(longestWaitingFirst);
+    }
+
+    // Visits items in order until the deadline; returns how many were visited.
+    private int visit(List<T> items, long deadline, Consumer<T> action) {
+        for (int i = 0; i < items.size(); i++) {
+            long now = System.nanoTime();
+            if (now >= deadline) {
+                waiting(items, i, now);
+                return i;
+            }
+            T item = items.get(i);
+            UUID uuid = idOf.apply(item);
+            long previous = lastVisit.getOrDefault(uuid, RETURNED);
+            if (previous != RETURNED) {
+                passWorstNanos = Math.max(passWorstNanos, now - previous);
+            }
+            lastVisit.put(uuid, now);
+            try {
+                action.accept(item);
+            } catch (RuntimeException ignored) {
+                // One failing player must not stall everyone queued behind them.
+            }
+        }
+        return items.size();
+    }
+
+    // Players the budget did not reach are still waiting; count how long so far.
+    private void waiting(List<T> items, int from, long now) {
+        for (int i = from; i < items.size(); i++) {
+            long previous = lastVisit.getOrDefault(idOf.apply(items.get(i)), RETURNED);
+            if (previous != RETURNED) {
+                passWorstNanos = Math.max(passWorstNanos, now - previous);
+            }
+        }
+    }
+
+    private void publishStaleness(long now) {
+        if (now - windowStart >= WINDOW_NANOS) {
+            previousWindowWorstNanos = windowWorstNanos;
+            windowWorstNanos = 0L;
+            windowStart = now;
+        }
+        windowWorstNanos = Math.max(windowWorstNanos, passWorstNanos);
+        worstStalenessNanos = Math.max(previousWindowWorstNanos, windowWorstNanos);
+    }
+}
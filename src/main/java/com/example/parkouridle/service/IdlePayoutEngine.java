@@ -0,0 +1,159 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.math.MutableBigNumber;
+import com.example.parkouridle.model.PlayerProgress;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Idle payouts for every online player, paid in one batch per pass from primitive columns.
+ */
+public final class IdlePayoutEngine {
+
+    private static final int OPTIONS = 6;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final UpgradeService upgradeService;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private final MutableBigNumber sum = new MutableBigNumber();
+    private final int[][] levels = new int[OPTIONS][];
+    private UUID[] players;
+    private long[] intervalMillis;
+    private long[] nextDueMillis;
+    private double[] gainMag;
+    private long[] gainLayer;
+    // Per-pass scratch.
+    private int[] due;
+    private int[] stale;
+    private PlayerProgress[] dueProgress;
+    private int size;
+
+    public IdlePayoutEngine(UpgradeService upgradeService) {
+        this.upgradeService = upgradeService;
+        resize(INITIAL_CAPACITY);
+    }
+
+    public synchronized void schedule(UUID uuid, long intervalSeconds, long nowMillis) {
+        Integer existing = slots.get(uuid);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+        } else {
+            if (size == players.length) {
+                resize(size * 2);
+            }
+            slot = size++;
+            slots.put(uuid, slot);
+            players[slot] = uuid;
+            // Forces a gain computation on the first payout.
+            levels[0][slot] = -1;
+        }
+        intervalMillis[slot] = Math.max(1L, intervalSeconds) * 1000L;
+        nextDueMillis[slot] = nowMillis + intervalMillis[slot];
+    }
+
+    public synchronized void remove(UUID uuid) {
+        Integer removed = slots.remove(uuid);
+        if (removed == null) {
+            return;
+        }
+        int slot = removed;
+        int last = --size;
+        if (slot != last) {
+            players[slot] = players[last];
+            intervalMillis[slot] = intervalMillis[last];
+            nextDueMillis[slot] = nextDueMillis[last];
+            gainMag[slot] = gainMag[last];
+            gainLayer[slot] = gainLayer[last];
+            for (int[] column : levels) {
+                column[slot] = column[last];
+            }
+            slots.put(players[slot], slot);
+        }
+        players[last] = null;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized void clear() {
+        slots.clear();
+        Arrays.fill(players, 0, size, null);
+        size = 0;
+    }
+
+    public synchronized int payDue(long nowMillis, Function<UUID, PlayerProgress> lookup, Consumer<PlayerProgress> onPaid) {
+        int dueCount = 0;
+        int staleCount = 0;
+        for (int slot = 0; slot < size; slot++) {
+            if (nextDueMillis[slot] > nowMillis) {
+                continue;
+            }
+            PlayerProgress progress = lookup.apply(players[slot]);
+            if (progress == null) {
+                continue;
+            }
+            nextDueMillis[slot] += intervalMillis[slot];
+            if (captureLevels(slot, progress)) {
+                stale[staleCount++] = slot;
+            }
+            due[dueCount] = slot;
+            dueProgress[dueCount++] = progress;
+        }
+        if (dueCount == 0) {
+            return 0;
+        }
+
+        upgradeService.computeIdlePointsPerTick(levels, stale, staleCount, gainMag, gainLayer);
+
+        for (int i = 0; i < dueCount; i++) {
+            int slot = due[i];
+            PlayerProgress progress = dueProgress[i];
+            dueProgress[i] = null;
+            progress.points = sum.set(progress.points).add(gainMag[slot], gainLayer[slot]).toBigNumber();
+            onPaid.accept(progress);
+        }
+        return dueCount;
+    }
+
+    // Copies the player's levels into the slot's columns; true if they differ from the ones the gain was computed for.
+    private boolean captureLevels(int slot, PlayerProgress progress) {
+        boolean changed = false;
+        changed |= capture(0, slot, progress.option1);
+        changed |= capture(1, slot, progress.option2);
+        changed |= capture(2, slot, progress.option3);
+        changed |= capture(3, slot, progress.option4);
+        changed |= capture(4, slot, progress.option5);
+        changed |= capture(5, slot, progress.option6);
+        return changed;
+    }
+
+    private boolean capture(int option, int slot, int level) {
+        int[] column = levels[option];
+        if (column[slot] == level) {
+            return false;
+        }
+        column[slot] = level;
+        return true;
+    }
+
+    private void resize(int capacity) {
+        players = players == null ? new UUID[capacity] : Arrays.copyOf(players, capacity);
+        intervalMillis = intervalMillis == null ? new long[capacity] : Arrays.copyOf(intervalMillis, capacity);
+        nextDueMillis = nextDueMillis == null ? new long[capacity] : Arrays.copyOf(nextDueMillis, capacity);
+        gainMag = gainMag == null ? new double[capacity] : Arrays.copyOf(gainMag, capacity);
+        gainLayer = gainLayer == null ? new long[capacity] : Arrays.copyOf(gainLayer, capacity);
+        for (int option = 0; option < OPTIONS; option++) {
+            levels[option] = levels[option] == null ? new int[capacity] : Arrays.copyOf(levels[option], capacity);
+        }
+        due = new int[capacity];
+        stale = new int[capacity];
+        dueProgress = new PlayerProgress[capacity];
+    }
+}
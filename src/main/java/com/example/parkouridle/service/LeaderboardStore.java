@@ -0,0 +1,305 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.util.UuidLongMap;
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+public final class LeaderboardStore {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+    private static final String SPLITS_EXTENSION = ".splits";
+    private static final int STORED_TOP_ROWS = 100;
+
+    private final Path dir;
+    private final ParkourStorage storage;
+    // Indexed backends serve top-N from storage instead of sorting the in-memory board.
+    private final boolean topFromStorage;
+    private final Map<Integer, UuidLongMap> boards = new HashMap<>();
+    private final Map<Integer, long[]> bestSplits = new HashMap<>();
+    // Fastest-first immutable copy of each board, built on first read and dropped when the board changes.
+    private final Map<Integer, List<Map.Entry<UUID, Long>>> sortedViews = new ConcurrentHashMap<>();
+    private final Map<Integer, StoredTop> storedTops = new ConcurrentHashMap<>();
+    // Bests not yet handed to storage, per track, and whether a write is queued for them; guarded by this.
+    private Map<Integer, UuidLongMap> pendingWrites = new HashMap<>();
+    private boolean writeQueued;
+    private final ExecutorService writer;
+    // Bumped under the lock whenever any board changes; read without it by caches of rendered boards.
+    private volatile long version;
+
+    public LeaderboardStore(Path dataDir, ParkourStorage storage, boolean topFromStorage) {
+        this.dir = dataDir.resolve("leaderboards");
+        this.storage = storage;
+        this.topFromStorage = topFromStorage;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ParkourIdle-LeaderboardIO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized int load() {
+        int entries = 0;
+        for (Map.Entry<Integer, UuidLongMap> entry : storage.loadLeaderboards().entrySet()) {
+            boards.put(entry.getKey(), entry.getValue());
+            forgetViews(entry.getKey());
+            entries += entry.getValue().size();
+            version++;
+        }
+
+        if (!Files.isDirectory(dir)) {
+            return entries;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(SPLITS_EXTENSION)).toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list best splits", e);
+        }
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            try {
+                int trackId = Integer.parseInt(name.substring(0, name.length() - SPLITS_EXTENSION.length()));
+                bestSplits.put(trackId, readSplits(file));
+            } catch (NumberFormatException ignored) {
+                // Not a track file.
+            }
+        }
+        return entries;
+    }
+
+    public synchronized int importLegacy(Map<Integer, UuidLongMap> legacyBoards) {
+        int imported = 0;
+        for (Map.Entry<Integer, UuidLongMap> entry : legacyBoards.entrySet()) {
+            int trackId = entry.getKey();
+            UuidLongMap legacy = entry.getValue();
+            if (boards.containsKey(trackId) || legacy.isEmpty()) {
+                continue;
+            }
+            boards.put(trackId, legacy);
+            forgetViews(trackId);
+            version++;
+            UuidLongMap copy = legacy.copy();
+            writer.execute(() -> storage.saveBestTimes(trackId, copy));
+            imported += legacy.size();
+        }
+        return imported;
+    }
+
+    public synchronized long getBest(int trackId, UUID uuid) {
+        UuidLongMap board = boards.get(trackId);
+        return board == null ? Long.MAX_VALUE : board.getOrDefault(uuid, Long.MAX_VALUE);
+    }
+
+    // Keeps the lower time: a faster best merged from another server must survive a slower local PB.
+    public synchronized boolean record(int trackId, UUID uuid, long millis) {
+        if (millis >= getBest(trackId, uuid)) {
+            return false;
+        }
+        boards.computeIfAbsent(trackId, id -> new UuidLongMap()).put(uuid, millis);
+        forgetViews(trackId);
+        version++;
+
+        pendingWrites.computeIfAbsent(trackId, id -> new UuidLongMap()).put(uuid, millis);
+        if (!writeQueued) {
+            writeQueued = true;
+            writer.execute(this::writePending);
+        }
+        return true;
+    }
+
+    /**
+     * Keeps the lower time, so replaying a delta is a no-op.
+     */
+    public boolean mergeRemote(int trackId, UUID uuid, long millis) {
+        return record(trackId, uuid, millis);
+    }
+
+    public List<Map.Entry<UUID, Long>> top(int trackId, int limit) {
+        List<Map.Entry<UUID, Long>> rows;
+        if (topFromStorage) {
+            StoredTop stored = storedTops.get(trackId);
+            rows = stored != null && stored.limit >= limit
+                ? stored.rows
+                : readStoredTop(trackId, Math.max(limit, STORED_TOP_ROWS));
+        } else {
+            rows = sortedViews.get(trackId);
+            if (rows == null) {
+                rows = buildSortedView(trackId);
+            }
+        }
+        return rows.size() > limit ? rows.subList(0, limit) : rows;
+    }
+
+    // Runs on the writer thread after the pending bests, so storage holds everything recorded before the call.
+    private List<Map.Entry<UUID, Long>> readStoredTop(int trackId, int limit) {
+        long seen = version;
+        List<Map.Entry<UUID, Long>> rows = CompletableFuture.supplyAsync(() -> {
+            writePending();
+            return List.copyOf(storage.topTimes(trackId, limit));
+        }, writer).join();
+        synchronized (this) {
+            // A best recorded meanwhile may be missing from the rows; serve them once but do not cache them.
+            if (version == seen) {
+                storedTops.put(trackId, new StoredTop(limit, rows));
+            }
+        }
+        return rows;
+    }
+
+    private void forgetViews(int trackId) {
+        sortedViews.remove(trackId);
+        storedTops.remove(trackId);
+    }
+
+    // Built under the lock so a concurrent record() cannot be overwritten by a stale view.
+    private synchronized List<Map.Entry<UUID, Long>> buildSortedView(int trackId) {
+        List<Map.Entry<UUID, Long>> cached = sortedViews.get(trackId);
+        if (cached != null) {
+            return cached;
+        }
+        UuidLongMap board = boards.get(trackId);
+        if (board == null || board.isEmpty()) {
+            return List.of();
+        }
+        List<Map.Entry<UUID, Long>> rows = new ArrayList<>(board.size());
+        for (int slot = board.nextSlot(-1); slot >= 0; slot = board.nextSlot(slot)) {
+            rows.add(Map.entry(board.keyAt(slot), board.valueAt(slot)));
+        }
+        rows.sort(Map.Entry.comparingByValue());
+        List<Map.Entry<UUID, Long>> view = List.copyOf(rows);
+        sortedViews.put(trackId, view);
+        return view;
+    }
+
+    public synchronized int recordSplits(int trackId, long[] splits) {
+        long[] best = bestSplits.get(trackId);
+        if (best == null || best.length != splits.length) {
+            // New track, or its checkpoints were edited since the splits were stored.
+            best = new long[splits.length];
+            Arrays.fill(best, Long.MAX_VALUE);
+            bestSplits.put(trackId, best);
+        }
+        int improved = 0;
+        for (int i = 0; i < splits.length; i++) {
+            if (splits[i] < best[i]) {
+                best[i] = splits[i];
+                improved++;
+            }
+        }
+        if (improved > 0) {
+            long[] copy = best.clone();
+            writer.execute(() -> writeSplits(trackId, copy));
+        }
+        return improved;
+    }
+
+    public synchronized long[] bestSplits(int trackId) {
+        long[] best = bestSplits.get(trackId);
+        return best == null ? null : best.clone();
+    }
+
+    public long version() {
+        return version;
+    }
+
+    public synchronized int size(int trackId) {
+        UuidLongMap board = boards.get(trackId);
+        return board == null ? 0 : board.size();
+    }
+
+    public void awaitWrites() {
+        CompletableFuture.runAsync(this::writePending, writer).join();
+        storage.flush();
+    }
+
+    public void close() {
+        writer.execute(this::writePending);
+        writer.shutdown();
+        try {
+            writer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void writePending() {
+        Map<Integer, UuidLongMap> batch;
+        synchronized (this) {
+            batch = pendingWrites;
+            pendingWrites = new HashMap<>();
+            writeQueued = false;
+        }
+        for (Map.Entry<Integer, UuidLongMap> entry : batch.entrySet()) {
+            try {
+                storage.saveBestTimes(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                requeue(entry.getKey(), entry.getValue());
+                LOGGER.at(Level.WARNING).withCause(e).log(
+                    "[ParkourIdle] Could not save %s best times for track %s; retrying on the next write",
+                    entry.getValue().size(),
+                    entry.getKey()
+                );
+            }
+        }
+    }
+
+    // A newer best recorded since the batch was taken wins over the failed one.
+    private synchronized void requeue(int trackId, UuidLongMap failed) {
+        UuidLongMap pending = pendingWrites.computeIfAbsent(trackId, id -> new UuidLongMap());
+        for (int slot = failed.nextSlot(-1); slot >= 0; slot = failed.nextSlot(slot)) {
+            UUID uuid = failed.keyAt(slot);
+            if (failed.valueAt(slot) < pending.getOrDefault(uuid, Long.MAX_VALUE)) {
+                pending.put(uuid, failed.valueAt(slot));
+            }
+        }
+    }
+
+    private void writeSplits(int trackId, long[] splits) {
+        Path target = dir.resolve(trackId + SPLITS_EXTENSION);
+        try {
+            SnapshotWriter.writeAtomically(target, stream -> {
+                DataOutputStream out = new DataOutputStream(stream);
+                for (long split : splits) {
+                    out.writeLong(split);
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save best splits for track " + trackId, e);
+        }
+    }
+
+    private static long[] readSplits(Path file) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            long[] splits = new long[(int) (Files.size(file) / Long.BYTES)];
+            for (int i = 0; i < splits.length; i++) {
+                splits[i] = in.readLong();
+            }
+            return splits;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load best splits " + file.getFileName(), e);
+        }
+    }
+
+    private record StoredTop(int limit, List<Map.Entry<UUID, Long>> rows) {
+    }
+}
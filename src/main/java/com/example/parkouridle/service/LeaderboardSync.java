@@ -0,0 +1,38 @@
+package com.example.parkouridle.service;
+
+import java.util.UUID;
+
+/**
+ * Shares personal bests between servers that host the same tracks.
+ */
+public interface LeaderboardSync {
+
+    LeaderboardSync NONE = new LeaderboardSync() {
+        @Override
+        public void publish(int trackId, UUID uuid, long millis) {
+        }
+
+        @Override
+        public int poll(DeltaSink sink) {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    /**
+     * Called from the run loop; must not block on I/O.
+     */
+    void publish(int trackId, UUID uuid, long millis);
+
+    int poll(DeltaSink sink);
+
+    void close();
+
+    @FunctionalInterface
+    interface DeltaSink {
+        void accept(int trackId, UUID uuid, long millis);
+    }
+}
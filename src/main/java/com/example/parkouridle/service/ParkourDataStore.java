@@ -1,92 +1,493 @@
 package com.example.parkouridle.service;
 
 import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.model.ParkourConfig;
 import com.example.parkouridle.model.PlayerProgress;
 import com.example.parkouridle.model.Track;
+import com.example.parkouridle.service.SnapshotWriter.Snapshot;
+import com.example.parkouridle.util.IntLongMap;
+import com.example.parkouridle.util.UuidLongMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
+import com.google.gson.TypeAdapter;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.JsonDeserializationContext;
 import com.google.gson.JsonDeserializer;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.Writer;
 import java.lang.reflect.Type;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
-public final class ParkourDataStore {
+/**
+ * File-based {@link ParkourStorage}. A leaderboard log ({@code leaderboards/<trackId>.lb}) is a sequence of
+ * 24-byte records (uuid msb, uuid lsb, millis) where the last record per player wins.
+ */
+public final class ParkourDataStore implements ParkourStorage {
 
     private static final Type TRACK_LIST_TYPE = new TypeToken<List<Track>>() {}.getType();
-    private static final Type PLAYER_MAP_TYPE = new TypeToken<Map<UUID, PlayerProgress>>() {}.getType();
+    private static final String LEADERBOARD_EXTENSION = ".lb";
+    private static final int RECORD_BYTES = 24;
+    private static final int COMPACT_SLACK = 64;
 
+    private final Path configFile;
     private final Path tracksFile;
-    private final Path playersFile;
+    private final Path playersDir;
+    private final Path legacyPlayersFile;
+    private final Path leaderboardDir;
     private final Gson gson;
+    private final SnapshotWriter snapshots = new SnapshotWriter("ParkourIdle-Snapshots");
+    // Tracks, players and leaderboards live in different files; separate locks let startup load them in parallel.
+    private final Object trackLock = new Object();
+    private final Object legacyPlayersLock = new Object();
+    private final Object leaderboardLock = new Object();
+    // Per track: records in the log, and live entries as of the last full read or rewrite. Guarded by leaderboardLock.
+    private final Map<Integer, Integer> logRecords = new HashMap<>();
+    private final Map<Integer, Integer> liveRecords = new HashMap<>();
 
     public ParkourDataStore(Path dataDir) {
+        this.configFile = dataDir.resolve("config.json");
         this.tracksFile = dataDir.resolve("tracks.json");
-        this.playersFile = dataDir.resolve("players.json");
-        this.gson = new GsonBuilder()
-            .setPrettyPrinting()
+        this.playersDir = dataDir.resolve("players");
+        this.legacyPlayersFile = dataDir.resolve("players.json");
+        this.leaderboardDir = dataDir.resolve("leaderboards");
+        this.gson = createGson(true);
+    }
+
+    static Gson createGson(boolean pretty) {
+        GsonBuilder builder = new GsonBuilder()
             .registerTypeAdapter(BigNumber.class, new BigNumberAdapter())
-            .create();
+            .registerTypeAdapter(IntLongMap.class, new IntLongMapAdapter().nullSafe());
+        if (pretty) {
+            builder.setPrettyPrinting();
+        }
+        return builder.create();
+    }
+
+    public ParkourConfig loadConfig() {
+        if (!Files.exists(configFile)) {
+            ParkourConfig defaults = new ParkourConfig();
+            ensureParent(configFile);
+            try (Writer writer = Files.newBufferedWriter(configFile, StandardCharsets.UTF_8)) {
+                gson.toJson(defaults, ParkourConfig.class, writer);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not write config.json", e);
+            }
+            return defaults;
+        }
+        try (Reader reader = Files.newBufferedReader(configFile, StandardCharsets.UTF_8)) {
+            ParkourConfig config = gson.fromJson(reader, ParkourConfig.class);
+            return config == null ? new ParkourConfig() : config;
+        } catch (IOException | RuntimeException e) {
+            throw new RuntimeException("Could not load config.json", e);
+        }
+    }
+
+    public Path tracksFile() {
+        return tracksFile;
+    }
+
+    @Override
+    public List<Track> loadTracks() {
+        return loadTracks(new HashMap<>());
+    }
+
+    /**
+     * Leaderboards still embedded by older versions are collected into {@code legacyBoards}.
+     */
+    public List<Track> loadTracks(Map<Integer, UuidLongMap> legacyBoards) {
+        synchronized (trackLock) {
+            snapshots.awaitWritten(tracksFile);
+            if (!Files.exists(tracksFile)) {
+                return new ArrayList<>();
+            }
+            try (JsonReader in = new JsonReader(Files.newBufferedReader(tracksFile, StandardCharsets.UTF_8))) {
+                List<Track> tracks = new ArrayList<>();
+                if (in.peek() == JsonToken.NULL) {
+                    return tracks;
+                }
+                in.beginArray();
+                while (in.hasNext()) {
+                    Track track = ParkourJsonReaders.readTrack(in, legacyBoards);
+                    if (track != null) {
+                        tracks.add(track);
+                    }
+                }
+                in.endArray();
+                return tracks;
+            } catch (IOException | RuntimeException e) {
+                throw new RuntimeException("Could not load tracks.json", e);
+            }
+        }
+    }
+
+    @Override
+    public void saveTracks(Collection<Track> tracks) {
+        List<Track> snapshot = List.copyOf(tracks);
+        synchronized (trackLock) {
+            snapshots.submit(tracksFile, json(snapshot, TRACK_LIST_TYPE));
+        }
+    }
+
+    @Override
+    public void deleteTrack(int trackId) {
+        synchronized (trackLock) {
+            List<Track> remaining = new ArrayList<>(loadTracks());
+            if (remaining.removeIf(track -> track.id == trackId)) {
+                saveTracks(remaining);
+            }
+        }
+        synchronized (leaderboardLock) {
+            logRecords.remove(trackId);
+            liveRecords.remove(trackId);
+            try {
+                Files.deleteIfExists(leaderboardFile(trackId));
+            } catch (IOException e) {
+                throw new RuntimeException("Could not delete leaderboard for track " + trackId, e);
+            }
+        }
+    }
+
+    @Override
+    public PlayerProgress loadPlayer(UUID uuid) {
+        Path file = playerFile(uuid);
+        snapshots.awaitWritten(file);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (JsonReader in = new JsonReader(Files.newBufferedReader(file, StandardCharsets.UTF_8))) {
+            PlayerProgress progress = ParkourJsonReaders.readPlayerProgress(in);
+            if (progress != null && progress.uuid == null) {
+                progress.uuid = uuid;
+            }
+            return progress;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load player " + uuid, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayer(PlayerProgress progress) {
+        return snapshots.submit(playerFile(progress.uuid), json(progress.copy(), PlayerProgress.class));
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayers(Collection<PlayerProgress> progress) {
+        CompletableFuture<?>[] writes = new CompletableFuture<?>[progress.size()];
+        int i = 0;
+        for (PlayerProgress player : progress) {
+            writes[i++] = savePlayer(player);
+        }
+        return CompletableFuture.allOf(writes);
+    }
+
+    public int migrateLegacyPlayers() {
+        synchronized (legacyPlayersLock) {
+            if (!Files.exists(legacyPlayersFile)) {
+                return 0;
+            }
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            ExecutorService writers = Executors.newFixedThreadPool(threads);
+            int backlog = threads * 64;
+            Semaphore inFlight = new Semaphore(backlog);
+            // First failed write; the writes themselves are not collected, so memory stays bounded by the backlog.
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            int migrated = 0;
+            try (JsonReader in = new JsonReader(Files.newBufferedReader(legacyPlayersFile, StandardCharsets.UTF_8))) {
+                if (in.peek() != JsonToken.NULL) {
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        UUID uuid = UUID.fromString(in.nextName());
+                        PlayerProgress progress = ParkourJsonReaders.readPlayerProgress(in);
+                        if (progress == null) {
+                            continue;
+                        }
+                        if (progress.uuid == null) {
+                            progress.uuid = uuid;
+                        }
+                        inFlight.acquire();
+                        writers.execute(() -> {
+                            try {
+                                SnapshotWriter.writeAtomically(playerFile(progress.uuid), json(progress, PlayerProgress.class));
+                            } catch (IOException | RuntimeException e) {
+                                failure.compareAndSet(null, e);
+                            } finally {
+                                inFlight.release();
+                            }
+                        });
+                        migrated++;
+                    }
+                    in.endObject();
+                }
+                // Every permit back means every write has finished.
+                inFlight.acquire(backlog);
+            } catch (IOException | RuntimeException e) {
+                throw new RuntimeException("Could not migrate players.json", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while migrating players.json", e);
+            } finally {
+                writers.shutdownNow();
+            }
+            if (failure.get() != null) {
+                throw new RuntimeException("Could not migrate players.json", failure.get());
+            }
+            try {
+                Files.move(legacyPlayersFile, legacyPlayersFile.resolveSibling("players.json.migrated"), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not retire players.json", e);
+            }
+            return migrated;
+        }
+    }
+
+    @Override
+    public int countStoredPlayers() {
+        snapshots.flush();
+        if (!Files.isDirectory(playersDir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.list(playersDir)) {
+            return (int) files.filter(file -> file.getFileName().toString().endsWith(".json")).count();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list player data", e);
+        }
     }
 
-    public synchronized List<Track> loadTracks() {
-        if (!Files.exists(tracksFile)) {
-            return new ArrayList<>();
+    @Override
+    public List<UUID> storedPlayerIds() {
+        snapshots.flush();
+        if (!Files.isDirectory(playersDir)) {
+            return List.of();
         }
-        try (Reader reader = Files.newBufferedReader(tracksFile, StandardCharsets.UTF_8)) {
-            List<Track> tracks = gson.fromJson(reader, TRACK_LIST_TYPE);
-            return tracks == null ? new ArrayList<>() : tracks;
+        try (Stream<Path> files = Files.list(playersDir)) {
+            List<UUID> ids = new ArrayList<>();
+            files.forEach(file -> {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".json")) {
+                    try {
+                        ids.add(UUID.fromString(name.substring(0, name.length() - ".json".length())));
+                    } catch (IllegalArgumentException ignored) {
+                        // Not a player record.
+                    }
+                }
+            });
+            return ids;
         } catch (IOException e) {
-            throw new RuntimeException("Could not load tracks.json", e);
+            throw new RuntimeException("Could not list player data", e);
+        }
+    }
+
+    /**
+     * A log with a torn trailing record is rewritten first, since appending after it would misalign the rest.
+     */
+    @Override
+    public Map<Integer, UuidLongMap> loadLeaderboards() {
+        synchronized (leaderboardLock) {
+            Map<Integer, UuidLongMap> boards = new HashMap<>();
+            if (!Files.isDirectory(leaderboardDir)) {
+                return boards;
+            }
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(leaderboardDir)) {
+                files = listing.filter(file -> file.getFileName().toString().endsWith(LEADERBOARD_EXTENSION)).toList();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not list leaderboards", e);
+            }
+
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                int trackId;
+                try {
+                    trackId = Integer.parseInt(name.substring(0, name.length() - LEADERBOARD_EXTENSION.length()));
+                } catch (NumberFormatException ignored) {
+                    continue;
+                }
+                UuidLongMap board = new UuidLongMap();
+                int records = readLog(file, board);
+                if (hasPartialRecord(file)) {
+                    writeCompacted(trackId, board);
+                    records = board.size();
+                }
+                logRecords.put(trackId, records);
+                liveRecords.put(trackId, board.size());
+                boards.put(trackId, board);
+            }
+            return boards;
         }
     }
 
-    public synchronized void saveTracks(Collection<Track> tracks) {
-        ensureParent(tracksFile);
-        try (Writer writer = Files.newBufferedWriter(tracksFile, StandardCharsets.UTF_8)) {
-            gson.toJson(tracks, TRACK_LIST_TYPE, writer);
+    @Override
+    public void saveBestTimes(int trackId, UuidLongMap bestTimes) {
+        if (bestTimes.isEmpty()) {
+            return;
+        }
+        synchronized (leaderboardLock) {
+            int records = logRecords.getOrDefault(trackId, 0) + bestTimes.size();
+            if (records <= liveRecords.getOrDefault(trackId, 0) * 2 + COMPACT_SLACK) {
+                appendLog(trackId, bestTimes);
+                logRecords.put(trackId, records);
+                return;
+            }
+            UuidLongMap board = new UuidLongMap();
+            Path file = leaderboardFile(trackId);
+            if (Files.exists(file)) {
+                readLog(file, board);
+            }
+            for (int slot = bestTimes.nextSlot(-1); slot >= 0; slot = bestTimes.nextSlot(slot)) {
+                board.put(bestTimes.mostBitsAt(slot), bestTimes.leastBitsAt(slot), bestTimes.valueAt(slot));
+            }
+            writeCompacted(trackId, board);
+            logRecords.put(trackId, board.size());
+            liveRecords.put(trackId, board.size());
+        }
+    }
+
+    @Override
+    public List<Map.Entry<UUID, Long>> topTimes(int trackId, int limit) {
+        UuidLongMap board = new UuidLongMap();
+        synchronized (leaderboardLock) {
+            Path file = leaderboardFile(trackId);
+            if (!Files.exists(file)) {
+                return List.of();
+            }
+            readLog(file, board);
+        }
+        List<Map.Entry<UUID, Long>> rows = new ArrayList<>(board.size());
+        for (int slot = board.nextSlot(-1); slot >= 0; slot = board.nextSlot(slot)) {
+            rows.add(Map.entry(board.keyAt(slot), board.valueAt(slot)));
+        }
+        rows.sort(Map.Entry.comparingByValue());
+        return rows.size() > limit ? List.copyOf(rows.subList(0, limit)) : rows;
+    }
+
+    @Override
+    public void flush() {
+        snapshots.flush();
+    }
+
+    @Override
+    public void exportForBackup(Path dir) {
+        // Every file is replaced atomically, so the backup reads them in place.
+    }
+
+    @Override
+    public void close() {
+        snapshots.close();
+    }
+
+    private Snapshot json(Object value, Type type) {
+        return out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            gson.toJson(value, type, writer);
+            writer.flush();
+        };
+    }
+
+    private Path leaderboardFile(int trackId) {
+        return leaderboardDir.resolve(trackId + LEADERBOARD_EXTENSION);
+    }
+
+    private void appendLog(int trackId, UuidLongMap entries) {
+        try {
+            Files.createDirectories(leaderboardDir);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(
+                leaderboardFile(trackId),
+                StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND
+            )))) {
+                for (int slot = entries.nextSlot(-1); slot >= 0; slot = entries.nextSlot(slot)) {
+                    out.writeLong(entries.mostBitsAt(slot));
+                    out.writeLong(entries.leastBitsAt(slot));
+                    out.writeLong(entries.valueAt(slot));
+                }
+            }
         } catch (IOException e) {
-            throw new RuntimeException("Could not save tracks.json", e);
+            throw new RuntimeException("Could not append leaderboard for track " + trackId, e);
         }
     }
 
-    public synchronized Map<UUID, PlayerProgress> loadPlayers() {
-        if (!Files.exists(playersFile)) {
-            return new HashMap<>();
+    private void writeCompacted(int trackId, UuidLongMap board) {
+        try {
+            SnapshotWriter.writeAtomically(leaderboardFile(trackId), stream -> {
+                DataOutputStream out = new DataOutputStream(stream);
+                for (int slot = board.nextSlot(-1); slot >= 0; slot = board.nextSlot(slot)) {
+                    out.writeLong(board.mostBitsAt(slot));
+                    out.writeLong(board.leastBitsAt(slot));
+                    out.writeLong(board.valueAt(slot));
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not compact leaderboard for track " + trackId, e);
         }
-        try (Reader reader = Files.newBufferedReader(playersFile, StandardCharsets.UTF_8)) {
-            Map<UUID, PlayerProgress> players = gson.fromJson(reader, PLAYER_MAP_TYPE);
-            return players == null ? new HashMap<>() : players;
+    }
+
+    private static boolean hasPartialRecord(Path file) {
+        try {
+            return Files.size(file) % RECORD_BYTES != 0;
         } catch (IOException e) {
-            throw new RuntimeException("Could not load players.json", e);
+            throw new RuntimeException("Could not stat leaderboard " + file.getFileName(), e);
         }
     }
 
-    public synchronized void savePlayers(Map<UUID, PlayerProgress> players) {
-        ensureParent(playersFile);
-        try (Writer writer = Files.newBufferedWriter(playersFile, StandardCharsets.UTF_8)) {
-            gson.toJson(players, PLAYER_MAP_TYPE, writer);
+    private static int readLog(Path file, UuidLongMap board) {
+        int records = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                long msb;
+                try {
+                    msb = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                long lsb = in.readLong();
+                long millis = in.readLong();
+                board.put(msb, lsb, millis);
+                records++;
+            }
+        } catch (EOFException truncated) {
+            // A crash mid-append leaves a partial trailing record; everything before it is intact.
         } catch (IOException e) {
-            throw new RuntimeException("Could not save players.json", e);
+            throw new RuntimeException("Could not load leaderboard " + file.getFileName(), e);
         }
+        return records;
+    }
+
+    private Path playerFile(UUID uuid) {
+        return playersDir.resolve(uuid + ".json");
     }
 
     private static void ensureParent(Path file) {
@@ -114,4 +515,20 @@ public final class ParkourDataStore {
             return BigNumber.ofLayer(mag, layer);
         }
     }
+
+    private static final class IntLongMapAdapter extends TypeAdapter<IntLongMap> {
+        @Override
+        public void write(JsonWriter out, IntLongMap map) throws IOException {
+            out.beginObject();
+            for (int slot = map.nextSlot(-1); slot >= 0; slot = map.nextSlot(slot)) {
+                out.name(Integer.toString(map.keyAt(slot))).value(map.valueAt(slot));
+            }
+            out.endObject();
+        }
+
+        @Override
+        public IntLongMap read(JsonReader in) throws IOException {
+            return ParkourJsonReaders.readIntLongMap(in);
+        }
+    }
 }
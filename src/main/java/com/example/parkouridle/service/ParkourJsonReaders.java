@@ -0,0 +1,168 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.model.PlayerProgress;
+import com.example.parkouridle.model.Track;
+import com.example.parkouridle.model.TrackVector3;
+import com.example.parkouridle.util.IntLongMap;
+import com.example.parkouridle.util.UuidLongMap;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+final class ParkourJsonReaders {
+
+    private ParkourJsonReaders() {
+    }
+
+    static Track readTrack(JsonReader in, Map<Integer, UuidLongMap> legacyBoards) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        Track track = new Track();
+        UuidLongMap legacyBoard = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id" -> track.id = in.nextInt();
+                case "world" -> track.world = skipNull(in) ? null : in.nextString();
+                case "start" -> track.start = readVector(in);
+                case "checkpoints" -> track.checkpoints = readVectorList(in);
+                case "finish" -> track.finish = readVector(in);
+                case "leaderboard" -> legacyBoard = readUuidLongMap(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (legacyBoard != null && !legacyBoard.isEmpty()) {
+            legacyBoards.put(track.id, legacyBoard);
+        }
+        return track;
+    }
+
+    static PlayerProgress readPlayerProgress(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        PlayerProgress progress = new PlayerProgress();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "uuid" -> progress.uuid = skipNull(in) ? null : UUID.fromString(in.nextString());
+                case "points" -> progress.points = readBigNumber(in);
+                case "currentVp" -> progress.currentVp = in.nextInt();
+                case "option1" -> progress.option1 = in.nextInt();
+                case "option2" -> progress.option2 = in.nextInt();
+                case "option3" -> progress.option3 = in.nextInt();
+                case "option4" -> progress.option4 = in.nextInt();
+                case "option5" -> progress.option5 = in.nextInt();
+                case "option6" -> progress.option6 = in.nextInt();
+                case "personalBestByTrack" -> progress.personalBestByTrack = readIntLongMap(in);
+                case "bestSplits" -> progress.bestSplits = readIntLongMap(in);
+                case "idlePbMillis" -> progress.idlePbMillis = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        if (progress.points == null) {
+            progress.points = BigNumber.ZERO;
+        }
+        if (progress.personalBestByTrack == null) {
+            progress.personalBestByTrack = new IntLongMap();
+        }
+        if (progress.bestSplits == null) {
+            progress.bestSplits = new IntLongMap();
+        }
+        return progress;
+    }
+
+    static BigNumber readBigNumber(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return BigNumber.ZERO;
+        }
+        double mag = 0.0;
+        long layer = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "mag" -> mag = in.nextDouble();
+                case "layer" -> layer = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return BigNumber.ofLayer(mag, layer);
+    }
+
+    static IntLongMap readIntLongMap(JsonReader in) throws IOException {
+        IntLongMap map = new IntLongMap();
+        if (skipNull(in)) {
+            return map;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            int key = Integer.parseInt(in.nextName());
+            map.put(key, in.nextLong());
+        }
+        in.endObject();
+        return map;
+    }
+
+    static UuidLongMap readUuidLongMap(JsonReader in) throws IOException {
+        UuidLongMap map = new UuidLongMap();
+        if (skipNull(in)) {
+            return map;
+        }
+        in.beginObject();
+        while (in.hasNext()) {
+            UUID key = UUID.fromString(in.nextName());
+            map.put(key, in.nextLong());
+        }
+        in.endObject();
+        return map;
+    }
+
+    private static TrackVector3 readVector(JsonReader in) throws IOException {
+        if (skipNull(in)) {
+            return null;
+        }
+        TrackVector3 vec = new TrackVector3();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "x" -> vec.x = in.nextInt();
+                case "y" -> vec.y = in.nextInt();
+                case "z" -> vec.z = in.nextInt();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return vec;
+    }
+
+    private static List<TrackVector3> readVectorList(JsonReader in) throws IOException {
+        List<TrackVector3> list = new ArrayList<>();
+        if (skipNull(in)) {
+            return list;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            list.add(readVector(in));
+        }
+        in.endArray();
+        return list;
+    }
+
+    private static boolean skipNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return true;
+        }
+        return false;
+    }
+}
@@ -1,11 +1,16 @@
 package com.example.parkouridle.service;
 
 import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.model.BlockPos;
+import com.example.parkouridle.model.ParkourConfig;
 import com.example.parkouridle.model.PlayerProgress;
 import com.example.parkouridle.model.Track;
 import com.example.parkouridle.model.TrackVector3;
+import com.example.parkouridle.ui.hud.RunTimerHud;
 import com.example.parkouridle.util.BigNumberFormatter;
+import com.example.parkouridle.util.RunTrace;
 import com.hypixel.hytale.component.Ref;
+import com.hypixel.hytale.logger.HytaleLogger;
 import com.hypixel.hytale.protocol.InteractionType;
 import com.hypixel.hytale.math.vector.Vector3d;
 import com.hypixel.hytale.math.vector.Vector3f;
@@ -13,6 +18,7 @@ import com.hypixel.hytale.math.vector.Vector3i;
 import com.hypixel.hytale.server.core.HytaleServer;
 import com.hypixel.hytale.server.core.Message;
 import com.hypixel.hytale.server.core.entity.entities.Player;
+import com.hypixel.hytale.server.core.event.events.player.PlayerConnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerDisconnectEvent;
 import com.hypixel.hytale.server.core.event.events.player.PlayerInteractEvent;
 import com.hypixel.hytale.server.core.inventory.Inventory;
@@ -22,20 +28,32 @@ import com.hypixel.hytale.server.core.modules.entity.teleport.Teleport;
 import com.hypixel.hytale.server.core.universe.PlayerRef;
 import com.hypixel.hytale.server.core.universe.Universe;
 import com.hypixel.hytale.server.core.universe.world.World;
+import com.hypixel.hytale.server.core.universe.world.events.RemoveWorldEvent;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
 
 public final class ParkourManager {
 
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
     private static final String GREEN_WOOL_ITEM = "hytale:green_wool";
     private static final String BLUE_WOOL_ITEM = "hytale:blue_wool";
     private static final String RED_WOOL_ITEM = "hytale:red_wool";
@@ -46,22 +64,75 @@ public final class ParkourManager {
 
     private final TrackRepository trackRepository;
     private final PlayerProgressRepository progressRepository;
+    private final LeaderboardStore leaderboardStore;
+    private final PointsRanking pointsRanking;
+    private final WindowedLeaderboards windowedBoards;
+    private final TrackStatsStore trackStats;
+    private final PlayerNameCache nameCache;
+    private final BackupService backupService;
+    private final TrackPacks trackPacks;
+    private final RunTraceStore traceStore;
+    private final LeaderboardSync leaderboardSync;
     private final UpgradeService upgradeService;
+    private final ParkourConfig config;
 
     private final Map<UUID, AdminSession> adminSessions = new HashMap<>();
-    private final Map<UUID, ActiveRun> activeRuns = new HashMap<>();
-    private final Map<UUID, ScheduledFuture<?>> idleTasks = new HashMap<>();
+    private final Map<UUID, ActiveRun> activeRuns = new ConcurrentHashMap<>();
+    // One token per connect; a load that finishes after its player left finds the token gone or replaced.
+    private final Map<UUID, Connection> connections = new ConcurrentHashMap<>();
+    private final Map<UUID, GhostPlayback> ghosts = new ConcurrentHashMap<>();
+    private final IdlePayoutEngine idlePayouts;
+    private final BudgetedTicker<Player> playerTicker = new BudgetedTicker<>(Player::getUuid);
+    // Read-only command queries; one virtual thread each, so slow lookups never hold up command dispatch.
+    private final ExecutorService queryExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     private ScheduledFuture<?> scanTask;
+    private ScheduledFuture<?> flushTask;
+    private ScheduledFuture<?> hudTask;
+    private ScheduledFuture<?> rankingTask;
+    private ScheduledFuture<?> payoutTask;
+    private ScheduledFuture<?> backupTask;
+    private ScheduledFuture<?> syncTask;
+    private ScheduledFuture<?> trackWatchTask;
+    private ScheduledFuture<?> ghostTask;
+    // tracks.json when the file store is in use and the operator asked for it to be watched; otherwise null.
+    private Path watchedTracksFile;
+    private long watchedTracksModified;
 
     public ParkourManager(
         TrackRepository trackRepository,
         PlayerProgressRepository progressRepository,
-        UpgradeService upgradeService
+        LeaderboardStore leaderboardStore,
+        PointsRanking pointsRanking,
+        WindowedLeaderboards windowedBoards,
+        TrackStatsStore trackStats,
+        PlayerNameCache nameCache,
+        BackupService backupService,
+        TrackPacks trackPacks,
+        RunTraceStore traceStore,
+        LeaderboardSync leaderboardSync,
+        UpgradeService upgradeService,
+        ParkourConfig config
     ) {
         this.trackRepository = trackRepository;
         this.progressRepository = progressRepository;
+        this.leaderboardStore = leaderboardStore;
+        this.pointsRanking = pointsRanking;
+        this.windowedBoards = windowedBoards;
+        this.trackStats = trackStats;
+        this.nameCache = nameCache;
+        this.backupService = backupService;
+        this.trackPacks = trackPacks;
+        this.traceStore = traceStore;
+        this.leaderboardSync = leaderboardSync;
         this.upgradeService = upgradeService;
+        this.config = config;
+        this.idlePayouts = new IdlePayoutEngine(upgradeService);
+    }
+
+    public void watchTracksFile(Path tracksFile) {
+        this.watchedTracksFile = tracksFile;
+        this.watchedTracksModified = lastModified(tracksFile);
     }
 
     public void start() {
@@ -75,6 +146,62 @@ public final class ParkourManager {
             200,
             TimeUnit.MILLISECONDS
         );
+        flushTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+            this::flushAll,
+            30,
+            30,
+            TimeUnit.SECONDS
+        );
+        rankingTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+            pointsRanking::flushPending,
+            5,
+            5,
+            TimeUnit.SECONDS
+        );
+        payoutTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+            this::payIdle,
+            1,
+            1,
+            TimeUnit.SECONDS
+        );
+        if (config.backupIntervalMinutes > 0) {
+            backupTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+                this::runScheduledBackup,
+                config.backupIntervalMinutes,
+                config.backupIntervalMinutes,
+                TimeUnit.MINUTES
+            );
+        }
+        if (leaderboardSync != LeaderboardSync.NONE) {
+            long syncInterval = Math.max(1, config.leaderboardSyncSeconds);
+            syncTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+                this::syncLeaderboards,
+                syncInterval,
+                syncInterval,
+                TimeUnit.SECONDS
+            );
+        }
+        if (watchedTracksFile != null) {
+            trackWatchTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleWithFixedDelay(
+                this::checkTracksFile,
+                2,
+                2,
+                TimeUnit.SECONDS
+            );
+        }
+        ghostTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+            this::tickGhosts,
+            100,
+            100,
+            TimeUnit.MILLISECONDS
+        );
+        long hudInterval = Math.max(50L, config.hudIntervalMillis);
+        hudTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(
+            this::tickHud,
+            hudInterval,
+            hudInterval,
+            TimeUnit.MILLISECONDS
+        );
     }
 
     public void stop() {
@@ -82,12 +209,52 @@ public final class ParkourManager {
             scanTask.cancel(false);
             scanTask = null;
         }
-        for (ScheduledFuture<?> task : idleTasks.values()) {
-            task.cancel(false);
+        if (flushTask != null) {
+            flushTask.cancel(false);
+            flushTask = null;
+        }
+        if (hudTask != null) {
+            hudTask.cancel(false);
+            hudTask = null;
+        }
+        if (rankingTask != null) {
+            rankingTask.cancel(false);
+            rankingTask = null;
+        }
+        if (payoutTask != null) {
+            payoutTask.cancel(false);
+            payoutTask = null;
+        }
+        idlePayouts.clear();
+        if (backupTask != null) {
+            backupTask.cancel(false);
+            backupTask = null;
+        }
+        backupService.close();
+        trackPacks.close();
+        traceStore.close();
+        if (syncTask != null) {
+            syncTask.cancel(false);
+            syncTask = null;
+        }
+        if (trackWatchTask != null) {
+            trackWatchTask.cancel(false);
+            trackWatchTask = null;
         }
-        idleTasks.clear();
-        progressRepository.save();
-        trackRepository.save();
+        if (ghostTask != null) {
+            ghostTask.cancel(false);
+            ghostTask = null;
+        }
+        ghosts.clear();
+        connections.clear();
+        leaderboardSync.close();
+        queryExecutor.shutdown();
+        progressRepository.close();
+        leaderboardStore.close();
+        pointsRanking.save();
+        windowedBoards.save();
+        trackStats.save();
+        nameCache.save();
     }
 
     public void beginAdminRegistration(Player player) {
@@ -120,8 +287,8 @@ public final class ParkourManager {
             return;
         }
 
-        if (isLike(itemId, CHECKPOINT_ITEM) && run.lastCheckpoint != null) {
-            teleportPlayer(player, run.lastCheckpoint);
+        if (isLike(itemId, CHECKPOINT_ITEM) && run.lastCheckpoint != BlockPos.NONE) {
+            teleportPlayer(player, BlockPos.toTrackVector3(run.lastCheckpoint));
             send(player, "Teleported to checkpoint.");
             return;
         }
@@ -132,32 +299,217 @@ public final class ParkourManager {
         }
     }
 
+    public void handlePlayerConnect(PlayerConnectEvent event) {
+        PlayerRef ref = event.getPlayerRef();
+        UUID uuid = ref.getUuid();
+        nameCache.remember(uuid, ref.getUsername());
+        Connection connection = new Connection();
+        Connection previous = connections.put(uuid, connection);
+        if (previous != null) {
+            previous.cancel();
+        }
+        connection.loaded = progressRepository.preload(uuid).thenAccept(progress -> {
+            pointsRanking.update(progress);
+            if (progress.idlePbMillis > 0) {
+                // Atomic with the removal on disconnect, so a player who already left is never scheduled.
+                connections.computeIfPresent(uuid, (key, current) -> {
+                    if (current == connection) {
+                        startIdleTask(uuid, progress.idlePbMillis);
+                    }
+                    return current;
+                });
+            }
+        });
+    }
+
+    public void handleWorldRemoved(RemoveWorldEvent event) {
+        World world = event.getWorld();
+        if (world != null) {
+            trackRepository.dropWorld(world.getName());
+        }
+    }
+
     public void handlePlayerDisconnect(PlayerDisconnectEvent event) {
         PlayerRef ref = event.getPlayerRef();
         UUID uuid = ref.getUuid();
-        activeRuns.remove(uuid);
+        Connection connection = connections.remove(uuid);
+        if (connection != null) {
+            connection.cancel();
+        }
+        ActiveRun run = activeRuns.remove(uuid);
+        if (run != null) {
+            run.ended = true;
+            trackStats.recordQuit(run.track.id);
+        }
         adminSessions.remove(uuid);
+        idlePayouts.remove(uuid);
+        playerTicker.forget(uuid);
+        ghosts.remove(uuid);
+        progressRepository.release(uuid);
     }
 
     public Track getTrack(int id) {
         return trackRepository.getTrack(id);
     }
 
+    public <T> CompletableFuture<T> query(Supplier<T> work) {
+        return CompletableFuture.supplyAsync(work, queryExecutor);
+    }
+
+    public CompletableFuture<BackupService.Summary> backupNow() {
+        return CompletableFuture.runAsync(this::flushForBackup, queryExecutor).thenCompose(ignored -> backupService.snapshotAsync());
+    }
+
+    public CompletableFuture<List<BackupService.Summary>> listBackups() {
+        return backupService.listAsync();
+    }
+
+    public CompletableFuture<Integer> stageRestore(String backupId) {
+        return backupService.stageRestoreAsync(backupId);
+    }
+
+    public Collection<Track> listTracks() {
+        return trackRepository.allTracks();
+    }
+
+    public long trackVersion() {
+        return trackRepository.version();
+    }
+
+    public long leaderboardVersion() {
+        return leaderboardStore.version();
+    }
+
+    public int getLeaderboardSize(int id) {
+        return leaderboardStore.size(id);
+    }
+
+    public TrackStatsStore.Stats getTrackStats(int id) {
+        return trackStats.stats(id);
+    }
+
+    public PlayerProgress findProgress(UUID uuid) {
+        return progressRepository.find(uuid);
+    }
+
+    public Metrics metrics() {
+        return new Metrics(
+            trackRepository.allTrackIds().size(),
+            activeRuns.size(),
+            idlePayouts.size(),
+            pointsRanking.size(),
+            leaderboardStore.version(),
+            playerTicker.budgetHits(),
+            playerTicker.worstStalenessMillis()
+        );
+    }
+
+    public CompletableFuture<TrackRepository.ReloadResult> reloadTracks() {
+        return CompletableFuture.supplyAsync(trackRepository::reload, queryExecutor);
+    }
+
+    public CompletableFuture<TrackPacks.ImportResult> importTracks(String packName) {
+        return trackPacks.importAsync(packName);
+    }
+
+    public CompletableFuture<Integer> exportTracks(String packName) {
+        return trackPacks.exportAsync(packName);
+    }
+
+    public void playGhost(Player player, int trackId, UUID runner, boolean summary) {
+        Track track = trackRepository.getTrack(trackId);
+        if (track == null) {
+            send(player, "Track not found: " + trackId);
+            return;
+        }
+        if (activeRuns.containsKey(player.getUuid())) {
+            send(player, "Finish or quit your run before watching a ghost.");
+            return;
+        }
+        World world = player.getWorld();
+        if (track.world != null && (world == null || !track.world.equals(world.getName()))) {
+            send(player, "Track " + trackId + " is in world " + track.world + ".");
+            return;
+        }
+        traceStore.loadAsync(trackId, runner).whenComplete((trace, error) -> {
+            if (error != null) {
+                LOGGER.at(Level.WARNING).withCause(error).log("[ParkourIdle] Could not load run trace for track %s", trackId);
+                send(player, "Could not load the trace.");
+                return;
+            }
+            if (trace == null) {
+                send(player, runner == null ? "No stored runs on track " + trackId + "." : "No stored run for that player.");
+                return;
+            }
+            if (activeRuns.containsKey(player.getUuid())) {
+                return;
+            }
+            if (summary) {
+                send(player, describeTrace(trace));
+            }
+            ghosts.put(player.getUuid(), new GhostPlayback(player, trace.data(), System.currentTimeMillis()));
+            send(player, "Playing " + BigNumberFormatter.formatMillis(trace.millis()) + " run on track " + trackId + ".");
+        });
+    }
+
+    public boolean stopGhost(Player player) {
+        return ghosts.remove(player.getUuid()) != null;
+    }
+
     public List<Integer> listTrackIds() {
         return trackRepository.allTrackIds();
     }
 
     public List<Map.Entry<UUID, Long>> getTopLeaderboard(int id, int limit) {
-        Track track = trackRepository.getTrack(id);
-        if (track == null) {
+        if (trackRepository.getTrack(id) == null) {
             return List.of();
         }
+        return leaderboardStore.top(id, limit);
+    }
 
-        return track.leaderboard.entrySet()
-            .stream()
-            .sorted(Map.Entry.comparingByValue())
-            .limit(limit)
-            .toList();
+    public List<Map.Entry<UUID, Long>> getTopLeaderboard(int id, WindowedLeaderboards.Window window, int limit) {
+        if (trackRepository.getTrack(id) == null) {
+            return List.of();
+        }
+        return windowedBoards.top(id, window, limit);
+    }
+
+    public int getLeaderboardRank(int id, WindowedLeaderboards.Window window, UUID uuid) {
+        return windowedBoards.rankOf(id, window, uuid);
+    }
+
+    public List<PointsRanking.Entry> getTopPoints(int limit) {
+        return pointsRanking.top(limit);
+    }
+
+    public int getPointsRank(UUID uuid) {
+        return pointsRanking.rankOf(uuid);
+    }
+
+    public int getRankedPlayerCount() {
+        return pointsRanking.size();
+    }
+
+    public String displayName(UUID uuid) {
+        return nameCache.nameOrShortUuid(uuid);
+    }
+
+    public String describeTrackStats(int id) {
+        TrackStatsStore.Stats stats = trackStats.stats(id);
+        if (stats.attempts() == 0) {
+            return "No runs yet.";
+        }
+        StringBuilder builder = new StringBuilder()
+            .append("Attempts: ").append(stats.attempts())
+            .append(" | Finished: ").append(stats.completions())
+            .append(" | Quit rate: ").append(Math.round(stats.quitRate() * 100.0)).append('%');
+        if (stats.completions() > 0) {
+            builder.append(" | Median: ");
+            BigNumberFormatter.appendMillis(builder, stats.medianMillis()).append(" | p90: ");
+            BigNumberFormatter.appendMillis(builder, stats.p90Millis()).append(" | p99: ");
+            BigNumberFormatter.appendMillis(builder, stats.p99Millis());
+        }
+        return builder.toString();
     }
 
     public PlayerProgress getProgress(UUID uuid) {
@@ -180,7 +532,8 @@ public final class ParkourManager {
 
         progress.points = progress.points.subtract(cost);
         incrementLevel(progress, option);
-        progressRepository.save();
+        pointsRanking.update(progress);
+        progressRepository.saveAsync(player.getUuid());
 
         send(player, "Upgrade " + option + " purchased. New level: " + getLevel(progress, option));
     }
@@ -196,7 +549,8 @@ public final class ParkourManager {
 
         progress.points = progress.points.subtract(cost);
         progress.currentVp++;
-        progressRepository.save();
+        pointsRanking.update(progress);
+        progressRepository.saveAsync(player.getUuid());
 
         send(player, "Purchased 1 Void Point. Total VP: " + progress.currentVp);
     }
@@ -207,6 +561,11 @@ public final class ParkourManager {
             send(player, "Track not found: " + id);
             return;
         }
+        World world = player.getWorld();
+        if (track.world != null && (world == null || !track.world.equals(world.getName()))) {
+            send(player, "Track " + id + " is in world " + track.world + ".");
+            return;
+        }
         teleportPlayer(player, track.start);
     }
 
@@ -230,6 +589,15 @@ public final class ParkourManager {
             }
             case WAIT_CHECKPOINT_OR_FINISH -> {
                 if (isLike(itemId, BLUE_WOOL_ITEM)) {
+                    if (session.checkpoints.size() >= Track.MAX_CHECKPOINTS) {
+                        send(player, "A track holds at most " + Track.MAX_CHECKPOINTS + " checkpoints. Place Red Wool for finish.");
+                        return;
+                    }
+                    int existing = session.checkpoints.indexOf(placed);
+                    if (existing >= 0) {
+                        send(player, "That block is already checkpoint #" + (existing + 1) + ".");
+                        return;
+                    }
                     session.checkpoints.add(placed);
                     send(player, "Checkpoint #" + session.checkpoints.size() + " saved.");
                     return;
@@ -245,6 +613,8 @@ public final class ParkourManager {
                 }
 
                 Track track = new Track(trackRepository.nextId(), session.start, new ArrayList<>(session.checkpoints), placed);
+                World world = player.getWorld();
+                track.world = world == null ? null : world.getName();
                 trackRepository.addTrack(track);
                 adminSessions.remove(player.getUuid());
                 send(player, "Track saved as ID " + track.id + ".");
@@ -252,6 +622,98 @@ public final class ParkourManager {
         }
     }
 
+    private void flushAll() {
+        progressRepository.flushDirty();
+        saveLogged("points ranking", pointsRanking::save);
+        saveLogged("windowed leaderboards", windowedBoards::save);
+        saveLogged("track stats", trackStats::save);
+        saveLogged("name cache", nameCache::save);
+    }
+
+    // A failed snapshot is retried on the next flush; the in-memory state stays intact.
+    private static void saveLogged(String what, Runnable save) {
+        try {
+            save.run();
+        } catch (RuntimeException e) {
+            LOGGER.at(Level.WARNING).withCause(e).log("[ParkourIdle] Could not save %s", what);
+        }
+    }
+
+    private void flushForBackup() {
+        flushAll();
+        progressRepository.awaitWrites();
+        leaderboardStore.awaitWrites();
+    }
+
+    private void runScheduledBackup() {
+        try {
+            backupNow().whenComplete((summary, error) -> {
+                if (error != null) {
+                    LOGGER.at(Level.WARNING).withCause(error).log("[ParkourIdle] Scheduled backup failed");
+                } else {
+                    LOGGER.at(Level.INFO).log(
+                        "[ParkourIdle] Backup %s: %s files, %s bytes added",
+                        summary.id(),
+                        summary.files(),
+                        summary.addedBytes()
+                    );
+                }
+            });
+        } catch (Exception ignored) {
+            // Keep scheduler alive if the backup cannot be started.
+        }
+    }
+
+    private void checkTracksFile() {
+        try {
+            long modified = lastModified(watchedTracksFile);
+            if (modified == watchedTracksModified) {
+                return;
+            }
+            watchedTracksModified = modified;
+            reloadTracks().whenComplete((result, error) -> {
+                if (error != null) {
+                    LOGGER.at(Level.WARNING).withCause(error).log("[ParkourIdle] Could not reload tracks.json");
+                } else if (!result.problems().isEmpty()) {
+                    LOGGER.at(Level.WARNING).log("[ParkourIdle] tracks.json not reloaded: %s", String.join(" ", result.problems()));
+                } else if (result.applied()) {
+                    LOGGER.at(Level.INFO).log(
+                        "[ParkourIdle] Reloaded tracks.json: %s added, %s changed, %s removed",
+                        result.added(),
+                        result.changed(),
+                        result.removed()
+                    );
+                }
+            });
+        } catch (Exception ignored) {
+            // Keep scheduler alive if the file cannot be checked this time.
+        }
+    }
+
+    private static long lastModified(Path file) {
+        try {
+            return Files.exists(file) ? Files.getLastModifiedTime(file).toMillis() : 0L;
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private void syncLeaderboards() {
+        try {
+            leaderboardSync.poll(this::mergeRemoteBest);
+        } catch (Exception e) {
+            // Keep scheduler alive; unread deltas are picked up by the next poll.
+            LOGGER.at(Level.WARNING).withCause(e).log("[ParkourIdle] Leaderboard sync failed");
+        }
+    }
+
+    private void mergeRemoteBest(int trackId, UUID uuid, long millis) {
+        // Only tracks this server also hosts; ids are shared when servers run the same tracks.json.
+        if (trackRepository.getTrack(trackId) != null) {
+            leaderboardStore.mergeRemote(trackId, uuid, millis);
+        }
+    }
+
     private void tickPlayers() {
         try {
             Universe universe = Universe.get();
@@ -260,10 +722,17 @@ public final class ParkourManager {
             }
 
             for (World world : universe.getWorlds().values()) {
+                // Worlds without tracks only need their runners checked, e.g. to notice a quit by walking away.
+                boolean hasTracks = !trackRepository.triggerIndex(world.getName()).isEmpty();
                 for (Player player : world.getPlayers()) {
-                    tickPlayer(player);
+                    boolean running = activeRuns.containsKey(player.getUuid());
+                    if (running || hasTracks) {
+                        playerTicker.add(player, running);
+                    }
                 }
             }
+            // Runners first; whoever does not fit in the budget is picked up first by the next pass.
+            playerTicker.run(TimeUnit.MILLISECONDS.toNanos(config.tickBudgetMillis), this::tickPlayer);
         } catch (Exception ignored) {
             // Keep scheduler alive if one player/world fails this cycle.
         }
@@ -279,12 +748,18 @@ public final class ParkourManager {
         int bx = (int) Math.floor(pos.getX());
         int by = (int) Math.floor(pos.getY()) - 1;
         int bz = (int) Math.floor(pos.getZ());
-        TrackVector3 block = new TrackVector3(bx, by, bz);
+        long block = BlockPos.pack(bx, by, bz);
 
         ActiveRun run = activeRuns.get(player.getUuid());
+        World world = player.getWorld();
+        String worldName = world == null ? null : world.getName();
 
         if (run == null) {
-            Track startTrack = findTrackAtStart(block);
+            if (ghosts.containsKey(player.getUuid())) {
+                // Playback moves the viewer along the ghost's path, start block included.
+                return;
+            }
+            Track startTrack = worldName == null ? null : trackRepository.findTrackAtStart(worldName, block);
             if (startTrack != null) {
                 startRun(player, startTrack);
             }
@@ -292,21 +767,48 @@ public final class ParkourManager {
         }
 
         ensureRunItems(player);
+        if (run.track.world != null && !run.track.world.equals(worldName)) {
+            // Same coordinates in another world are not this track's blocks.
+            return;
+        }
+        run.trace.record(block, System.currentTimeMillis() - run.startedAtMillis);
 
-        if (isTrackCheckpoint(run.track, block)) {
+        // Checkpoints count only in order: ordinal i needs i - 1 to have been reached first.
+        int checkpointIndex = run.track.checkpointIndexOf(block);
+        if (checkpointIndex >= 0 && (checkpointIndex == 0 || run.isReached(checkpointIndex - 1))) {
             run.lastCheckpoint = block;
+            if (!run.isReached(checkpointIndex)) {
+                long split = System.currentTimeMillis() - run.startedAtMillis;
+                run.markReached(checkpointIndex, split);
+                run.lastCheckpointIndex = checkpointIndex;
+                run.lastSplitMillis = split;
+                run.hudDirty = true;
+            }
         }
 
-        if (Objects.equals(run.track.finish, block)) {
-            long elapsed = System.currentTimeMillis() - run.startedAtMillis;
-            endRun(player, true, elapsed);
+        boolean onFinish = run.track.finishBlock == block;
+        if (onFinish && !run.onFinish) {
+            int missing = run.firstMissingCheckpoint();
+            if (missing < 0) {
+                long elapsed = System.currentTimeMillis() - run.startedAtMillis;
+                endRun(player, true, elapsed);
+                return;
+            }
+            send(player, "Finish not counted: checkpoint " + (missing + 1) + " was skipped.");
         }
+        run.onFinish = onFinish;
     }
 
     private void startRun(Player player, Track track) {
-        ActiveRun run = new ActiveRun(track, System.currentTimeMillis());
-        run.lastCheckpoint = track.start;
+        PlayerProgress progress = progressRepository.getOrCreate(player.getUuid());
+        ActiveRun run = new ActiveRun(track, System.currentTimeMillis(), createHud(player), config.traceBytesPerRun);
+        for (int i = 0; i < run.pbSplits.length; i++) {
+            run.pbSplits[i] = progress.bestSplits.getOrDefault(Track.splitKey(track.id, i), Long.MAX_VALUE);
+        }
+        run.lastCheckpoint = track.startBlock;
+        run.trace.record(track.startBlock, 0L);
         activeRuns.put(player.getUuid(), run);
+        trackStats.recordAttempt(track.id);
 
         ensureRunItems(player);
         send(player, "Parkour mode started on Track " + track.id + ".");
@@ -315,10 +817,26 @@ public final class ParkourManager {
     private void endRun(Player player, boolean finished, long elapsedMillis) {
         ActiveRun run = activeRuns.remove(player.getUuid());
         clearRunItems(player);
+        if (run != null) {
+            // Under the run's lock so a HUD pass that already picked up this run cannot show it again after hide().
+            synchronized (run) {
+                run.ended = true;
+                if (run.hud != null) {
+                    run.hud.hide();
+                }
+            }
+        }
 
-        if (!finished || run == null) {
+        if (run == null) {
+            return;
+        }
+        if (!finished) {
+            trackStats.recordQuit(run.track.id);
             return;
         }
+        trackStats.recordCompletion(run.track.id, elapsedMillis);
+
+        windowedBoards.record(run.track.id, player.getUuid(), elapsedMillis, System.currentTimeMillis());
 
         PlayerProgress progress = progressRepository.getOrCreate(player.getUuid());
         long oldPb = progress.personalBestByTrack.getOrDefault(run.track.id, Long.MAX_VALUE);
@@ -326,34 +844,190 @@ public final class ParkourManager {
 
         if (newPb) {
             progress.personalBestByTrack.put(run.track.id, elapsedMillis);
-            run.track.leaderboard.put(player.getUuid(), elapsedMillis);
-            trackRepository.save();
+            progress.idlePbMillis = elapsedMillis;
+            if (leaderboardStore.record(run.track.id, player.getUuid(), elapsedMillis)) {
+                leaderboardSync.publish(run.track.id, player.getUuid(), elapsedMillis);
+            }
             startIdleTask(player.getUuid(), elapsedMillis);
+            traceStore.savePbAsync(run.track.id, new RunTraceStore.StoredTrace(
+                player.getUuid(),
+                elapsedMillis,
+                run.trace.samples(),
+                run.trace.truncated(),
+                run.trace.toByteArray()
+            ));
             send(player, "New PB: " + BigNumberFormatter.formatMillis(elapsedMillis));
         } else {
             send(player, "Finished in " + BigNumberFormatter.formatMillis(elapsedMillis));
         }
 
+        long[] splits = run.splits;
+        for (int i = 0; i < splits.length; i++) {
+            int key = Track.splitKey(run.track.id, i);
+            if (splits[i] < progress.bestSplits.getOrDefault(key, Long.MAX_VALUE)) {
+                progress.bestSplits.put(key, splits[i]);
+            }
+        }
+        int trackBestSplits = leaderboardStore.recordSplits(run.track.id, splits);
+        if (trackBestSplits > 0) {
+            send(player, trackBestSplits + " new track-best split" + (trackBestSplits == 1 ? "." : "s."));
+        }
+
         BigNumber gain = upgradeService.computeIdlePointsPerTick(progress);
         progress.points = progress.points.add(gain);
-        progressRepository.save();
+        pointsRanking.update(progress);
+        progressRepository.saveAsync(player.getUuid());
+    }
+
+    private void tickHud() {
+        try {
+            long now = System.currentTimeMillis();
+            long resolution = Math.max(1L, config.hudResolutionMillis);
+            for (ActiveRun run : activeRuns.values()) {
+                if (run.hud == null) {
+                    continue;
+                }
+                long shownTicks = (now - run.startedAtMillis) / resolution;
+                if (shownTicks == run.hudShownTicks && !run.hudDirty) {
+                    continue;
+                }
+                run.hudShownTicks = shownTicks;
+                run.hudDirty = false;
+
+                int cp = run.lastCheckpointIndex;
+                String split = cp < 0
+                    ? "CP 0/" + run.splits.length
+                    : "CP " + (cp + 1) + "/" + run.splits.length + " @ " + BigNumberFormatter.formatMillis(run.lastSplitMillis)
+                        + (run.pbSplits[cp] == Long.MAX_VALUE
+                            ? ""
+                            : " (" + BigNumberFormatter.formatDeltaMillis(run.lastSplitMillis - run.pbSplits[cp]) + ")");
+                synchronized (run) {
+                    if (!run.ended) {
+                        run.hud.showTime(BigNumberFormatter.formatMillis(shownTicks * resolution), split);
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+            // Keep scheduler alive if one HUD update fails this cycle.
+        }
+    }
+
+    private RunTimerHud createHud(Player player) {
+        PlayerRef playerRef = player.getPlayerRef();
+        if (playerRef == null) {
+            return null;
+        }
+        RunTimerHud hud = new RunTimerHud(playerRef);
+        player.getHudManager().setCustomHud(playerRef, hud);
+        return hud;
     }
 
     private void startIdleTask(UUID uuid, long pbMillis) {
-        ScheduledFuture<?> oldTask = idleTasks.remove(uuid);
-        if (oldTask != null) {
-            oldTask.cancel(false);
+        idlePayouts.schedule(uuid, upgradeService.payoutIntervalSeconds(pbMillis), System.currentTimeMillis());
+    }
+
+    private void payIdle() {
+        try {
+            idlePayouts.payDue(System.currentTimeMillis(), progressRepository::getOrCreate, this::onIdlePaid);
+        } catch (Exception ignored) {
+            // Keep scheduler alive if one payout pass fails.
+        }
+    }
+
+    private void tickGhosts() {
+        try {
+            long now = System.currentTimeMillis();
+            for (Map.Entry<UUID, GhostPlayback> entry : ghosts.entrySet()) {
+                GhostPlayback ghost = entry.getValue();
+                long elapsed = now - ghost.startedAtMillis;
+                boolean moved = false;
+                int x = 0;
+                int y = 0;
+                int z = 0;
+                // Skip straight to the latest due sample; intermediate ones would only be overwritten this tick.
+                while (ghost.hasSample && ghost.reader.millis() <= elapsed) {
+                    x = ghost.reader.x();
+                    y = ghost.reader.y();
+                    z = ghost.reader.z();
+                    moved = true;
+                    ghost.hasSample = ghost.reader.next();
+                }
+                TrackVector3 target = moved ? new TrackVector3(x, y, z) : null;
+                boolean finished = !ghost.hasSample;
+                if (finished) {
+                    ghosts.remove(entry.getKey(), ghost);
+                }
+                if (target != null || finished) {
+                    moveGhostViewer(entry.getKey(), ghost, target, finished);
+                }
+            }
+        } catch (Exception e) {
+            // Keep scheduler alive if one playback step fails.
+            LOGGER.at(Level.WARNING).withCause(e).log("[ParkourIdle] Ghost playback step failed");
+        }
+    }
+
+    // Entity components may only change on the world's own thread.
+    private void moveGhostViewer(UUID uuid, GhostPlayback ghost, TrackVector3 target, boolean finished) {
+        World world = ghost.viewer.getWorld();
+        if (world == null) {
+            ghosts.remove(uuid, ghost);
+            return;
         }
+        world.execute(() -> {
+            try {
+                if (target != null) {
+                    teleportPlayer(ghost.viewer, target);
+                }
+                if (finished) {
+                    send(ghost.viewer, "Ghost run finished.");
+                }
+            } catch (RuntimeException e) {
+                ghosts.remove(uuid, ghost);
+                LOGGER.at(Level.WARNING).withCause(e).log("[ParkourIdle] Stopped ghost playback for %s", uuid);
+            }
+        });
+    }
 
-        long seconds = Math.max(1L, pbMillis / 1000L);
-        ScheduledFuture<?> newTask = HytaleServer.SCHEDULED_EXECUTOR.scheduleAtFixedRate(() -> {
-            PlayerProgress progress = progressRepository.getOrCreate(uuid);
-            BigNumber gain = upgradeService.computeIdlePointsPerTick(progress);
-            progress.points = progress.points.add(gain);
-            progressRepository.save();
-        }, seconds, seconds, TimeUnit.SECONDS);
+    private static String describeTrace(RunTraceStore.StoredTrace trace) {
+        RunTrace.Reader reader = new RunTrace.Reader(trace.data());
+        double fastest = 0.0;
+        long duration = 0L;
+        boolean first = true;
+        int x = 0;
+        int y = 0;
+        int z = 0;
+        long millis = 0L;
+        while (reader.next()) {
+            if (!first && reader.millis() > millis) {
+                double dx = reader.x() - x;
+                double dy = reader.y() - y;
+                double dz = reader.z() - z;
+                double speed = Math.sqrt(dx * dx + dy * dy + dz * dz) * 1000.0 / (reader.millis() - millis);
+                fastest = Math.max(fastest, speed);
+            }
+            first = false;
+            x = reader.x();
+            y = reader.y();
+            z = reader.z();
+            millis = reader.millis();
+            duration = millis;
+        }
+        return String.format(
+            Locale.ROOT,
+            "Trace of %s: %d samples over %s, %d bytes, fastest %.1f blocks/s%s.",
+            trace.uuid(),
+            trace.samples(),
+            BigNumberFormatter.formatMillis(duration),
+            trace.data().length,
+            fastest,
+            trace.truncated() ? ", truncated" : ""
+        );
+    }
 
-        idleTasks.put(uuid, newTask);
+    private void onIdlePaid(PlayerProgress progress) {
+        pointsRanking.updateLater(progress);
+        progressRepository.markDirty(progress.uuid);
     }
 
     private void teleportPlayer(Player player, TrackVector3 location) {
@@ -403,24 +1077,6 @@ public final class ParkourManager {
         player.sendInventory();
     }
 
-    private Track findTrackAtStart(TrackVector3 block) {
-        for (Track track : trackRepository.allTracks()) {
-            if (Objects.equals(track.start, block)) {
-                return track;
-            }
-        }
-        return null;
-    }
-
-    private boolean isTrackCheckpoint(Track track, TrackVector3 block) {
-        for (TrackVector3 checkpoint : track.checkpoints) {
-            if (Objects.equals(checkpoint, block)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     private static void send(Player player, String text) {
         player.sendMessage(Message.raw("[Parkour] " + text));
     }
@@ -459,11 +1115,48 @@ public final class ParkourManager {
         }
     }
 
+    public record Metrics(
+        int tracks,
+        int activeRuns,
+        int idlePlayers,
+        int rankedPlayers,
+        long leaderboardVersion,
+        long tickBudgetHits,
+        long worstTickStalenessMillis
+    ) {
+    }
+
     private enum AdminStage {
         WAIT_START,
         WAIT_CHECKPOINT_OR_FINISH
     }
 
+    private static final class Connection {
+        private volatile CompletableFuture<Void> loaded;
+
+        private void cancel() {
+            CompletableFuture<Void> pending = loaded;
+            if (pending != null) {
+                pending.cancel(false);
+            }
+        }
+    }
+
+    private static final class GhostPlayback {
+        private final Player viewer;
+        private final RunTrace.Reader reader;
+        private final long startedAtMillis;
+        // The sample the reader is on, not yet due when hasSample is true.
+        private boolean hasSample;
+
+        private GhostPlayback(Player viewer, byte[] trace, long startedAtMillis) {
+            this.viewer = viewer;
+            this.reader = new RunTrace.Reader(trace);
+            this.startedAtMillis = startedAtMillis;
+            this.hasSample = reader.next();
+        }
+    }
+
     private static final class AdminSession {
         private AdminStage stage = AdminStage.WAIT_START;
         private TrackVector3 start;
@@ -473,11 +1166,51 @@ public final class ParkourManager {
     private static final class ActiveRun {
         private final Track track;
         private final long startedAtMillis;
-        private TrackVector3 lastCheckpoint;
-
-        private ActiveRun(Track track, long startedAtMillis) {
+        private final RunTimerHud hud;
+        // Sampled positions; sized once per run, so recording a sample never allocates.
+        private final RunTrace trace;
+        // Elapsed millis at each checkpoint ordinal, valid where the matching bit in reached is set.
+        private final long[] splits;
+        private final long[] reached;
+        // The player's best split per ordinal when the run started, Long.MAX_VALUE where none exists.
+        private final long[] pbSplits;
+        private long lastCheckpoint = BlockPos.NONE;
+        private int lastCheckpointIndex = -1;
+        private long lastSplitMillis;
+        private boolean onFinish;
+        private long hudShownTicks = -1;
+        private volatile boolean hudDirty = true;
+        private volatile boolean ended;
+
+        private ActiveRun(Track track, long startedAtMillis, RunTimerHud hud, int traceBytes) {
             this.track = track;
             this.startedAtMillis = startedAtMillis;
+            this.hud = hud;
+            this.trace = new RunTrace(traceBytes);
+            int checkpoints = track.checkpointBlocks.length;
+            this.splits = new long[checkpoints];
+            this.reached = new long[(checkpoints + 63) >>> 6];
+            this.pbSplits = new long[checkpoints];
+        }
+
+        private boolean isReached(int ordinal) {
+            return (reached[ordinal >>> 6] & (1L << ordinal)) != 0;
+        }
+
+        private void markReached(int ordinal, long splitMillis) {
+            reached[ordinal >>> 6] |= 1L << ordinal;
+            splits[ordinal] = splitMillis;
+        }
+
+        private int firstMissingCheckpoint() {
+            for (int word = 0; word < reached.length; word++) {
+                long missing = ~reached[word];
+                if (missing != 0) {
+                    int ordinal = (word << 6) + Long.numberOfTrailingZeros(missing);
+                    return ordinal < splits.length ? ordinal : -1;
+                }
+            }
+            return -1;
         }
     }
 }
@@ -0,0 +1,55 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.model.PlayerProgress;
+import com.example.parkouridle.model.Track;
+import com.example.parkouridle.util.UuidLongMap;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+public interface ParkourStorage {
+
+    List<Track> loadTracks();
+
+    /**
+     * Deletes stored tracks that are not in {@code tracks}.
+     */
+    void saveTracks(Collection<Track> tracks);
+
+    void deleteTrack(int trackId);
+
+    PlayerProgress loadPlayer(UUID uuid);
+
+    /**
+     * A failure may be thrown here or reported through the future.
+     */
+    CompletableFuture<Void> savePlayer(PlayerProgress progress);
+
+    CompletableFuture<Void> savePlayers(Collection<PlayerProgress> progress);
+
+    List<UUID> storedPlayerIds();
+
+    int countStoredPlayers();
+
+    Map<Integer, UuidLongMap> loadLeaderboards();
+
+    void saveBestTimes(int trackId, UuidLongMap bestTimes);
+
+    List<Map.Entry<UUID, Long>> topTimes(int trackId, int limit);
+
+    /**
+     * Blocks until every save accepted so far is durable.
+     */
+    void flush();
+
+    /**
+     * Writes consistent copies of files a plain copy could tear into {@code dir}, under their data directory paths.
+     */
+    void exportForBackup(Path dir);
+
+    void close();
+}
@@ -0,0 +1,113 @@
+package com.example.parkouridle.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PlayerNameCache {
+
+    private final Path file;
+    private final int capacity;
+    private final Map<UUID, String> names = new ConcurrentHashMap<>();
+    // Guarded by this; oldest first.
+    private final LinkedHashSet<UUID> order = new LinkedHashSet<>();
+    private boolean changed;
+
+    public PlayerNameCache(Path dataDir, int capacity) {
+        this.file = dataDir.resolve("player-names.bin");
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public synchronized int load() {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                insert(uuid, in.readUTF());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load player-names.bin", e);
+        }
+        changed = false;
+        return names.size();
+    }
+
+    public synchronized void remember(UUID uuid, String name) {
+        if (uuid == null || name == null || name.isEmpty()) {
+            return;
+        }
+        if (!name.equals(names.get(uuid)) || !isNewest(uuid)) {
+            insert(uuid, name);
+            changed = true;
+        }
+    }
+
+    public String get(UUID uuid) {
+        return names.get(uuid);
+    }
+
+    public String nameOrShortUuid(UUID uuid) {
+        String name = names.get(uuid);
+        return name != null ? name : uuid.toString().substring(0, 8);
+    }
+
+    public void save() {
+        List<Map.Entry<UUID, String>> snapshot;
+        synchronized (this) {
+            if (!changed) {
+                return;
+            }
+            changed = false;
+            snapshot = new ArrayList<>(order.size());
+            for (UUID uuid : order) {
+                snapshot.add(Map.entry(uuid, names.get(uuid)));
+            }
+        }
+
+        try {
+            SnapshotWriter.writeAtomically(file, stream -> {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(snapshot.size());
+                for (Map.Entry<UUID, String> entry : snapshot) {
+                    out.writeLong(entry.getKey().getMostSignificantBits());
+                    out.writeLong(entry.getKey().getLeastSignificantBits());
+                    out.writeUTF(entry.getValue());
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            synchronized (this) {
+                changed = true;
+            }
+            throw new RuntimeException("Could not save player-names.bin", e);
+        }
+    }
+
+    private void insert(UUID uuid, String name) {
+        order.remove(uuid);
+        order.add(uuid);
+        names.put(uuid, name);
+        if (order.size() > capacity) {
+            Iterator<UUID> oldest = order.iterator();
+            names.remove(oldest.next());
+            oldest.remove();
+        }
+    }
+
+    private boolean isNewest(UUID uuid) {
+        return !order.isEmpty() && order.getLast().equals(uuid);
+    }
+}
@@ -1,26 +1,252 @@
 package com.example.parkouridle.service;
 
 import com.example.parkouridle.model.PlayerProgress;
+import com.hypixel.hytale.logger.HytaleLogger;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
 
 public final class PlayerProgressRepository {
 
-    private final ParkourDataStore dataStore;
-    private final Map<UUID, PlayerProgress> players;
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+    private static final int OFFLINE_CACHE_SIZE = 256;
 
-    public PlayerProgressRepository(ParkourDataStore dataStore) {
-        this.dataStore = dataStore;
-        this.players = new HashMap<>(dataStore.loadPlayers());
+    private final ParkourStorage storage;
+    private final Map<UUID, PlayerProgress> online = new HashMap<>();
+    private final Map<UUID, CompletableFuture<PlayerProgress>> pendingLoads = new HashMap<>();
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final ExecutorService ioExecutor;
+    // Evicted records whose write is still queued; lookups keep finding them until it has landed.
+    private final Map<UUID, PlayerProgress> evicting = new HashMap<>();
+    private final LinkedHashMap<UUID, PlayerProgress> offline = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, PlayerProgress> eldest) {
+            if (size() <= OFFLINE_CACHE_SIZE) {
+                return false;
+            }
+            UUID uuid = eldest.getKey();
+            if (dirty.remove(uuid)) {
+                // Never write under the repository lock: hand the record to the I/O thread instead.
+                PlayerProgress progress = eldest.getValue();
+                evicting.put(uuid, progress);
+                ioExecutor.execute(() -> write(List.of(progress)));
+            }
+            return true;
+        }
+    };
+
+    public PlayerProgressRepository(ParkourStorage storage) {
+        this.storage = storage;
+        this.ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ParkourIdle-PlayerIO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public synchronized CompletableFuture<PlayerProgress> preload(UUID uuid) {
+        PlayerProgress resident = online.get(uuid);
+        if (resident == null) {
+            resident = offline.remove(uuid);
+            if (resident == null) {
+                resident = evicting.get(uuid);
+            }
+            if (resident != null) {
+                online.put(uuid, resident);
+            }
+        }
+        if (resident != null) {
+            return CompletableFuture.completedFuture(resident);
+        }
+
+        CompletableFuture<PlayerProgress> pending = pendingLoads.get(uuid);
+        if (pending != null) {
+            return pending;
+        }
+
+        CompletableFuture<PlayerProgress> load = new CompletableFuture<>();
+        pendingLoads.put(uuid, load);
+        ioExecutor.execute(() -> {
+            try {
+                load.complete(admit(uuid, loadOrNew(uuid)));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    pendingLoads.remove(uuid, load);
+                }
+                load.completeExceptionally(e);
+            }
+        });
+        return load;
+    }
+
+    public PlayerProgress getOrCreate(UUID uuid) {
+        CompletableFuture<PlayerProgress> pending;
+        synchronized (this) {
+            PlayerProgress cached = cached(uuid);
+            if (cached != null) {
+                return cached;
+            }
+            pending = pendingLoads.get(uuid);
+        }
+        if (pending != null) {
+            return pending.join();
+        }
+
+        PlayerProgress loaded = loadOrNew(uuid);
+        synchronized (this) {
+            PlayerProgress cached = cached(uuid);
+            if (cached != null) {
+                return cached;
+            }
+            offline.put(uuid, loaded);
+            return loaded;
+        }
+    }
+
+    public PlayerProgress find(UUID uuid) {
+        synchronized (this) {
+            PlayerProgress cached = cached(uuid);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        // Not admitted to the LRU: outside lookups must not evict the records the game is using.
+        return storage.loadPlayer(uuid);
+    }
+
+    public synchronized void release(UUID uuid) {
+        CompletableFuture<PlayerProgress> pending = pendingLoads.remove(uuid);
+        PlayerProgress progress = online.remove(uuid);
+        if (progress == null && pending == null) {
+            return;
+        }
+        if (progress != null) {
+            offline.put(uuid, progress);
+        }
+        ioExecutor.execute(() -> flush(uuid));
+    }
+
+    public void markDirty(UUID uuid) {
+        dirty.add(uuid);
+    }
+
+    public void saveAsync(UUID uuid) {
+        dirty.add(uuid);
+        ioExecutor.execute(() -> flush(uuid));
+    }
+
+    public void flushDirty() {
+        ioExecutor.execute(() -> flushAll(new ArrayList<>(dirty)));
+    }
+
+    public void awaitWrites() {
+        CompletableFuture.runAsync(() -> flushAll(new ArrayList<>(dirty)), ioExecutor).join();
+        storage.flush();
+    }
+
+    public void close() {
+        ioExecutor.shutdown();
+        try {
+            ioExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushAll(new ArrayList<>(dirty));
+    }
+
+    private void flush(UUID uuid) {
+        PlayerProgress progress;
+        synchronized (this) {
+            progress = cached(uuid);
+            if (!dirty.remove(uuid)) {
+                return;
+            }
+        }
+        if (progress != null) {
+            write(List.of(progress));
+        }
+    }
+
+    private void flushAll(List<UUID> uuids) {
+        List<PlayerProgress> batch = new ArrayList<>(uuids.size());
+        synchronized (this) {
+            for (UUID uuid : uuids) {
+                PlayerProgress progress = cached(uuid);
+                if (dirty.remove(uuid) && progress != null) {
+                    batch.add(progress);
+                }
+            }
+        }
+        write(batch);
+    }
+
+    // Writes are queued by the storage; a failed one marks its records dirty again so the next flush retries them.
+    private void write(List<PlayerProgress> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> written;
+        try {
+            written = storage.savePlayers(batch);
+        } catch (RuntimeException e) {
+            written = CompletableFuture.failedFuture(e);
+        }
+        written.whenComplete((ignored, error) -> {
+            if (error != null) {
+                for (PlayerProgress progress : batch) {
+                    dirty.add(progress.uuid);
+                }
+                LOGGER.at(Level.WARNING).withCause(error).log("[ParkourIdle] Could not save %s players; retrying on the next flush", batch.size());
+            }
+            settle(batch);
+        });
+    }
+
+    // Drops written records from the eviction buffer unless they changed again since.
+    private synchronized void settle(List<PlayerProgress> written) {
+        for (PlayerProgress progress : written) {
+            if (!dirty.contains(progress.uuid)) {
+                evicting.remove(progress.uuid, progress);
+            }
+        }
+    }
+
+    private synchronized PlayerProgress admit(UUID uuid, PlayerProgress loaded) {
+        PlayerProgress existing = cached(uuid);
+        if (existing != null) {
+            loaded = existing;
+        }
+        if (pendingLoads.remove(uuid) != null) {
+            offline.remove(uuid);
+            online.put(uuid, loaded);
+        } else if (existing == null) {
+            // Disconnected while loading: keep it warm but not resident.
+            offline.put(uuid, loaded);
+        }
+        return loaded;
     }
 
-    public synchronized PlayerProgress getOrCreate(UUID uuid) {
-        return players.computeIfAbsent(uuid, PlayerProgress::new);
+    private PlayerProgress cached(UUID uuid) {
+        PlayerProgress progress = online.get(uuid);
+        if (progress == null) {
+            progress = offline.get(uuid);
+        }
+        return progress != null ? progress : evicting.get(uuid);
     }
 
-    public synchronized void save() {
-        dataStore.savePlayers(players);
+    private PlayerProgress loadOrNew(UUID uuid) {
+        PlayerProgress loaded = storage.loadPlayer(uuid);
+        return loaded != null ? loaded : new PlayerProgress(uuid);
     }
 }
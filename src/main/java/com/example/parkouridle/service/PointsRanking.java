@@ -0,0 +1,151 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.model.PlayerProgress;
+import com.example.parkouridle.util.OrderStatisticTree;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PointsRanking {
+
+    private static final Comparator<Entry> ORDER = Comparator
+        .comparingInt(Entry::vp).reversed()
+        .thenComparing(Entry::points, Comparator.reverseOrder())
+        .thenComparing(Entry::uuid);
+
+    private final Path file;
+    private final OrderStatisticTree<Entry> tree = new OrderStatisticTree<>(ORDER);
+    private final Map<UUID, Entry> byPlayer = new HashMap<>();
+    private final Map<UUID, PlayerProgress> pending = new ConcurrentHashMap<>();
+    private boolean changed;
+
+    public PointsRanking(Path dataDir) {
+        this.file = dataDir.resolve("ranking.bin");
+    }
+
+    public synchronized int load(ParkourStorage storage) {
+        if (!Files.exists(file)) {
+            for (UUID uuid : storage.storedPlayerIds()) {
+                PlayerProgress progress = storage.loadPlayer(uuid);
+                if (progress != null) {
+                    put(new Entry(uuid, progress.currentVp, progress.points));
+                }
+            }
+            changed = true;
+            return tree.size();
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                int vp = in.readInt();
+                double mag = in.readDouble();
+                long layer = in.readLong();
+                put(new Entry(uuid, vp, BigNumber.ofLayer(mag, layer)));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load ranking.bin", e);
+        }
+        return tree.size();
+    }
+
+    public void update(PlayerProgress progress) {
+        pending.remove(progress.uuid);
+        apply(progress);
+    }
+
+    /**
+     * Repeated idle payouts before the next {@link #flushPending()} collapse into one update.
+     */
+    public void updateLater(PlayerProgress progress) {
+        pending.put(progress.uuid, progress);
+    }
+
+    public void flushPending() {
+        for (UUID uuid : new ArrayList<>(pending.keySet())) {
+            PlayerProgress progress = pending.remove(uuid);
+            if (progress != null) {
+                apply(progress);
+            }
+        }
+    }
+
+    public synchronized List<Entry> top(int limit) {
+        return tree.head(limit);
+    }
+
+    public synchronized int rankOf(UUID uuid) {
+        Entry entry = byPlayer.get(uuid);
+        return entry == null ? -1 : tree.rankOf(entry) + 1;
+    }
+
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    public void save() {
+        flushPending();
+        List<Entry> snapshot;
+        synchronized (this) {
+            if (!changed) {
+                return;
+            }
+            changed = false;
+            snapshot = tree.head(tree.size());
+        }
+        try {
+            SnapshotWriter.writeAtomically(file, stream -> {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(snapshot.size());
+                for (Entry entry : snapshot) {
+                    out.writeLong(entry.uuid.getMostSignificantBits());
+                    out.writeLong(entry.uuid.getLeastSignificantBits());
+                    out.writeInt(entry.vp);
+                    out.writeDouble(entry.points.mag());
+                    out.writeLong(entry.points.layer());
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            synchronized (this) {
+                changed = true;
+            }
+            throw new RuntimeException("Could not save ranking.bin", e);
+        }
+    }
+
+    private synchronized void apply(PlayerProgress progress) {
+        Entry current = byPlayer.get(progress.uuid);
+        if (current != null && current.vp == progress.currentVp && current.points.equals(progress.points)) {
+            return;
+        }
+        if (current != null) {
+            tree.remove(current);
+        }
+        put(new Entry(progress.uuid, progress.currentVp, progress.points));
+        changed = true;
+    }
+
+    private void put(Entry entry) {
+        Entry previous = byPlayer.put(entry.uuid, entry);
+        if (previous != null) {
+            tree.remove(previous);
+        }
+        tree.add(entry);
+    }
+
+    public record Entry(UUID uuid, int vp, BigNumber points) {
+    }
+}
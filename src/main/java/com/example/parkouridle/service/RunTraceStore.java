@@ -0,0 +1,185 @@
+package com.example.parkouridle.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public final class RunTraceStore {
+
+    private static final String EXTENSION = ".traces";
+    private static final int FORMAT_VERSION = 1;
+
+    private final Path dir;
+    private final int keepPerTrack;
+    private final ExecutorService executor;
+
+    public RunTraceStore(Path dataDir, int keepPerTrack) {
+        this.dir = dataDir.resolve("traces");
+        this.keepPerTrack = Math.max(1, keepPerTrack);
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ParkourIdle-TraceIO");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public CompletableFuture<Void> savePbAsync(int trackId, StoredTrace trace) {
+        return CompletableFuture.runAsync(() -> save(trackId, trace), executor);
+    }
+
+    /**
+     * A null {@code uuid} loads the fastest trace on the track.
+     */
+    public CompletableFuture<StoredTrace> loadAsync(int trackId, UUID uuid) {
+        return CompletableFuture.supplyAsync(() -> load(trackId, uuid), executor);
+    }
+
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void save(int trackId, StoredTrace trace) {
+        Path file = dir.resolve(trackId + EXTENSION);
+        try {
+            SnapshotWriter.writeAtomically(file, stream -> {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(FORMAT_VERSION);
+                int kept = 0;
+                boolean written = false;
+                if (Files.exists(file)) {
+                    try (DataInputStream in = open(file)) {
+                        EntryHeader header = new EntryHeader();
+                        while (kept < keepPerTrack && header.read(in)) {
+                            if (!written && trace.millis() < header.millis) {
+                                writeEntry(out, trace);
+                                written = true;
+                                kept++;
+                                if (kept == keepPerTrack) {
+                                    break;
+                                }
+                            }
+                            if (header.uuid.equals(trace.uuid())) {
+                                in.skipNBytes(header.length);
+                                continue;
+                            }
+                            header.write(out);
+                            copy(in, out, header.length);
+                            kept++;
+                        }
+                    }
+                }
+                if (!written && kept < keepPerTrack) {
+                    writeEntry(out, trace);
+                }
+                out.writeByte(0);
+                out.flush();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save run trace for track " + trackId, e);
+        }
+    }
+
+    private StoredTrace load(int trackId, UUID uuid) {
+        Path file = dir.resolve(trackId + EXTENSION);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (DataInputStream in = open(file)) {
+            EntryHeader header = new EntryHeader();
+            while (header.read(in)) {
+                if (uuid == null || header.uuid.equals(uuid)) {
+                    byte[] data = in.readNBytes(header.length);
+                    return new StoredTrace(header.uuid, header.millis, header.samples, header.truncated, data);
+                }
+                in.skipNBytes(header.length);
+            }
+            return null;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load run traces for track " + trackId, e);
+        }
+    }
+
+    private static DataInputStream open(Path file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            in.close();
+            throw new IOException("Unknown trace file version " + version + " in " + file.getFileName());
+        }
+        return in;
+    }
+
+    private static void writeEntry(DataOutputStream out, StoredTrace trace) throws IOException {
+        out.writeByte(1);
+        out.writeLong(trace.uuid().getMostSignificantBits());
+        out.writeLong(trace.uuid().getLeastSignificantBits());
+        out.writeLong(trace.millis());
+        out.writeInt(trace.samples());
+        out.writeBoolean(trace.truncated());
+        out.writeInt(trace.data().length);
+        out.write(trace.data());
+    }
+
+    private static void copy(InputStream in, DataOutputStream out, int length) throws IOException {
+        byte[] chunk = new byte[Math.min(length, 8192)];
+        int remaining = length;
+        while (remaining > 0) {
+            int read = in.read(chunk, 0, Math.min(chunk.length, remaining));
+            if (read < 0) {
+                throw new EOFException("Run trace ends early");
+            }
+            out.write(chunk, 0, read);
+            remaining -= read;
+        }
+    }
+
+    public record StoredTrace(UUID uuid, long millis, int samples, boolean truncated, byte[] data) {
+    }
+
+    // Reused while streaming through a file; the trace bytes follow each header.
+    private static final class EntryHeader {
+        private UUID uuid;
+        private long millis;
+        private int samples;
+        private boolean truncated;
+        private int length;
+
+        // False at the end marker.
+        boolean read(DataInputStream in) throws IOException {
+            if (in.readByte() == 0) {
+                return false;
+            }
+            uuid = new UUID(in.readLong(), in.readLong());
+            millis = in.readLong();
+            samples = in.readInt();
+            truncated = in.readBoolean();
+            length = in.readInt();
+            return true;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeByte(1);
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            out.writeLong(millis);
+            out.writeInt(samples);
+            out.writeBoolean(truncated);
+            out.writeInt(length);
+        }
+    }
+}
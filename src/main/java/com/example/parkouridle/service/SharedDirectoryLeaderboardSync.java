@@ -0,0 +1,280 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.util.UuidLongMap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Each server appends to its own {@code <serverId>.deltas} file in a shared directory and reads the others'.
+ */
+public final class SharedDirectoryLeaderboardSync implements LeaderboardSync {
+
+    private static final String EXTENSION = ".deltas";
+    private static final int RECORD_BYTES = Integer.BYTES + Long.BYTES * 3;
+    private static final int READ_BUFFER_RECORDS = 2048;
+    // Upper bound on what one poll reads from a single file, so catching up on a long history is spread out.
+    private static final long MAX_BYTES_PER_FILE_POLL = RECORD_BYTES * 131_072L;
+    // Pairs past this are dropped while the directory is unreachable; they still count locally.
+    private static final int MAX_OUTGOING = 65_536;
+
+    private final Path sharedDir;
+    private final Path cursorFile;
+    private final String serverId;
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(RECORD_BYTES * READ_BUFFER_RECORDS);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_BYTES * READ_BUFFER_RECORDS);
+    // Fastest unsent time per (track, player), guarded by outgoingLock.
+    private final Object outgoingLock = new Object();
+    private Map<Integer, UuidLongMap> outgoing = new HashMap<>();
+    private int outgoingSize;
+    // How far each remote file has been merged; guarded by this.
+    private final Map<String, Long> cursors;
+
+    public SharedDirectoryLeaderboardSync(Path sharedDir, Path dataDir) {
+        this.sharedDir = sharedDir;
+        this.cursorFile = dataDir.resolve("sync-cursors.bin");
+        try {
+            Files.createDirectories(sharedDir);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not create leaderboard sync directory " + sharedDir, e);
+        }
+        this.serverId = loadOrCreateServerId(dataDir.resolve("sync-server-id"));
+        this.cursors = loadCursors(cursorFile);
+    }
+
+    public String serverId() {
+        return serverId;
+    }
+
+    @Override
+    public void publish(int trackId, UUID uuid, long millis) {
+        synchronized (outgoingLock) {
+            offer(trackId, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), millis);
+        }
+    }
+
+    // Caller holds outgoingLock.
+    private void offer(int trackId, long msb, long lsb, long millis) {
+        UuidLongMap board = outgoing.get(trackId);
+        long held = board == null ? Long.MAX_VALUE : board.getOrDefault(msb, lsb, Long.MAX_VALUE);
+        if (millis >= held) {
+            return;
+        }
+        if (held == Long.MAX_VALUE) {
+            if (outgoingSize >= MAX_OUTGOING) {
+                return;
+            }
+            if (board == null) {
+                board = new UuidLongMap();
+                outgoing.put(trackId, board);
+            }
+            outgoingSize++;
+        }
+        board.put(msb, lsb, millis);
+    }
+
+    @Override
+    public synchronized int poll(DeltaSink sink) {
+        sendOutgoing();
+
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(sharedDir)) {
+            files = listing.filter(this::isRemoteFile).toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list leaderboard sync directory " + sharedDir, e);
+        }
+
+        int delivered = 0;
+        boolean moved = false;
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long offset = cursors.getOrDefault(name, 0L);
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                continue;
+            }
+            if (size < offset) {
+                // The file was replaced or truncated; merging is idempotent, so start over.
+                offset = 0L;
+            }
+            long available = Math.min(size - offset, MAX_BYTES_PER_FILE_POLL);
+            long end = offset + available / RECORD_BYTES * RECORD_BYTES;
+            if (end == offset) {
+                continue;
+            }
+            delivered += readRange(file, offset, end, sink);
+            cursors.put(name, end);
+            moved = true;
+        }
+        if (moved) {
+            saveCursors();
+        }
+        return delivered;
+    }
+
+    @Override
+    public synchronized void close() {
+        sendOutgoing();
+    }
+
+    private boolean isRemoteFile(Path file) {
+        String name = file.getFileName().toString();
+        return name.endsWith(EXTENSION) && !name.equals(serverId + EXTENSION) && Files.isRegularFile(file);
+    }
+
+    private int readRange(Path file, long from, long to, DeltaSink sink) {
+        int delivered = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = from;
+            while (position < to) {
+                readBuffer.clear();
+                readBuffer.limit((int) Math.min(readBuffer.capacity(), to - position));
+                while (readBuffer.hasRemaining()) {
+                    if (channel.read(readBuffer, position + readBuffer.position()) < 0) {
+                        throw new IOException("Unexpected end of " + file.getFileName());
+                    }
+                }
+                readBuffer.flip();
+                while (readBuffer.remaining() >= RECORD_BYTES) {
+                    int trackId = readBuffer.getInt();
+                    UUID uuid = new UUID(readBuffer.getLong(), readBuffer.getLong());
+                    long millis = readBuffer.getLong();
+                    if (millis > 0L) {
+                        sink.accept(trackId, uuid, millis);
+                        delivered++;
+                    }
+                }
+                position += readBuffer.limit();
+            }
+        } catch (NoSuchFileException e) {
+            return delivered;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read leaderboard deltas " + file.getFileName(), e);
+        }
+        return delivered;
+    }
+
+    // Appends whole records; a reader racing the append sees a short tail and waits for the rest.
+    private void sendOutgoing() {
+        Map<Integer, UuidLongMap> batch;
+        synchronized (outgoingLock) {
+            if (outgoingSize == 0) {
+                return;
+            }
+            batch = outgoing;
+            outgoing = new HashMap<>();
+            outgoingSize = 0;
+        }
+        try (FileChannel channel = FileChannel.open(
+            sharedDir.resolve(serverId + EXTENSION),
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE
+        )) {
+            // Whole records only: a tail left by an earlier failed write would misalign everything after it.
+            long start = channel.size() / RECORD_BYTES * RECORD_BYTES;
+            channel.truncate(start);
+            long position = start;
+            writeBuffer.clear();
+            for (Map.Entry<Integer, UuidLongMap> entry : batch.entrySet()) {
+                UuidLongMap board = entry.getValue();
+                for (int slot = board.nextSlot(-1); slot >= 0; slot = board.nextSlot(slot)) {
+                    if (writeBuffer.remaining() < RECORD_BYTES) {
+                        position = drain(channel, position);
+                    }
+                    writeBuffer.putInt(entry.getKey());
+                    writeBuffer.putLong(board.mostBitsAt(slot));
+                    writeBuffer.putLong(board.leastBitsAt(slot));
+                    writeBuffer.putLong(board.valueAt(slot));
+                }
+            }
+            drain(channel, position);
+            channel.force(false);
+        } catch (IOException e) {
+            // Queue the bests again for the next poll; a faster time published meanwhile wins.
+            synchronized (outgoingLock) {
+                for (Map.Entry<Integer, UuidLongMap> entry : batch.entrySet()) {
+                    UuidLongMap board = entry.getValue();
+                    for (int slot = board.nextSlot(-1); slot >= 0; slot = board.nextSlot(slot)) {
+                        offer(entry.getKey(), board.mostBitsAt(slot), board.leastBitsAt(slot), board.valueAt(slot));
+                    }
+                }
+            }
+            throw new RuntimeException("Could not publish leaderboard deltas", e);
+        }
+    }
+
+    // Writes out writeBuffer at position and returns the position after it.
+    private long drain(FileChannel channel, long position) throws IOException {
+        writeBuffer.flip();
+        while (writeBuffer.hasRemaining()) {
+            position += channel.write(writeBuffer, position);
+        }
+        writeBuffer.clear();
+        return position;
+    }
+
+    private void saveCursors() {
+        Map<String, Long> copy = Map.copyOf(cursors);
+        try {
+            SnapshotWriter.writeAtomically(cursorFile, stream -> {
+                DataOutputStream out = new DataOutputStream(stream);
+                out.writeInt(copy.size());
+                for (Map.Entry<String, Long> entry : copy.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeLong(entry.getValue());
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not save leaderboard sync cursors", e);
+        }
+    }
+
+    private static Map<String, Long> loadCursors(Path file) {
+        Map<String, Long> cursors = new HashMap<>();
+        if (!Files.exists(file)) {
+            return cursors;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                cursors.put(in.readUTF(), in.readLong());
+            }
+            return cursors;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load leaderboard sync cursors", e);
+        }
+    }
+
+    private static String loadOrCreateServerId(Path file) {
+        try {
+            if (Files.exists(file)) {
+                String stored = Files.readString(file, StandardCharsets.UTF_8).trim();
+                if (!stored.isEmpty()) {
+                    return stored;
+                }
+            }
+            String created = UUID.randomUUID().toString();
+            SnapshotWriter.writeAtomically(file, out -> out.write(created.getBytes(StandardCharsets.UTF_8)));
+            return created;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load leaderboard sync server id", e);
+        }
+    }
+}
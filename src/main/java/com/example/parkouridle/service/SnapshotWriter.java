@@ -0,0 +1,134 @@
+package com.example.parkouridle.service;
+
+import com.hypixel.hytale.logger.HytaleLogger;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+public final class SnapshotWriter {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private final ExecutorService executor;
+    // Guarded by this: snapshots not yet started, and the completion of the newest request per path.
+    private final Map<Path, Snapshot> queued = new HashMap<>();
+    private final Map<Path, CompletableFuture<Void>> latest = new HashMap<>();
+
+    public SnapshotWriter(String threadName) {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The snapshot must not depend on data the caller keeps changing.
+     */
+    public synchronized CompletableFuture<Void> submit(Path target, Snapshot snapshot) {
+        CompletableFuture<Void> done = latest.get(target);
+        if (queued.put(target, snapshot) != null && done != null) {
+            // Still waiting to run; it will now write this snapshot instead.
+            return done;
+        }
+        CompletableFuture<Void> write = new CompletableFuture<>();
+        latest.put(target, write);
+        executor.execute(() -> runQueued(target, write));
+        return write;
+    }
+
+    public void awaitWritten(Path target) {
+        CompletableFuture<Void> done;
+        synchronized (this) {
+            done = latest.get(target);
+        }
+        if (done != null) {
+            done.exceptionally(e -> null).join();
+        }
+    }
+
+    public void flush() {
+        CompletableFuture<?>[] pending;
+        synchronized (this) {
+            pending = latest.values().toArray(new CompletableFuture<?>[0]);
+        }
+        CompletableFuture.allOf(pending).exceptionally(e -> null).join();
+    }
+
+    public void close() {
+        flush();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void writeAtomically(Path target, Snapshot snapshot) throws IOException {
+        Path dir = target.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(
+            temp,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING
+        )) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+            snapshot.writeTo(out);
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(dir);
+    }
+
+    private void runQueued(Path target, CompletableFuture<Void> write) {
+        Snapshot snapshot;
+        synchronized (this) {
+            snapshot = queued.remove(target);
+        }
+        try {
+            if (snapshot != null) {
+                writeAtomically(target, snapshot);
+            }
+            write.complete(null);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.at(Level.WARNING).withCause(e).log("[ParkourIdle] Could not write %s", target.getFileName());
+            write.completeExceptionally(e);
+        } finally {
+            synchronized (this) {
+                latest.remove(target, write);
+            }
+        }
+    }
+
+    // Persists the rename itself. Not every platform can open a directory; the data file is synced either way.
+    private static void syncDirectory(Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // Best effort.
+        }
+    }
+
+    @FunctionalInterface
+    public interface Snapshot {
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
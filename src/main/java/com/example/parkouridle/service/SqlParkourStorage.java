@@ -0,0 +1,368 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.model.PlayerProgress;
+import com.example.parkouridle.model.Track;
+import com.example.parkouridle.util.UuidLongMap;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import org.h2.Driver;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+public final class SqlParkourStorage implements ParkourStorage {
+
+    private static final int BATCH_SIZE = 500;
+    private static final String DATABASE_NAME = "parkouridle";
+
+    private final Connection connection;
+    private final Gson gson = ParkourDataStore.createGson(false);
+
+    private SqlParkourStorage(Connection connection) {
+        this.connection = connection;
+    }
+
+    public static SqlParkourStorage open(Path dataDir) {
+        String url = "jdbc:h2:file:" + dataDir.resolve(DATABASE_NAME).toAbsolutePath() + ";DB_CLOSE_ON_EXIT=FALSE";
+        try {
+            // DriverManager only finds drivers visible to the context class loader, which a shaded plugin jar is not.
+            Connection connection = new Driver().connect(url, new Properties());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TABLE IF NOT EXISTS tracks (id INT PRIMARY KEY, data CLOB NOT NULL)");
+                statement.execute("CREATE TABLE IF NOT EXISTS players (uuid UUID PRIMARY KEY, data CLOB NOT NULL)");
+                statement.execute(
+                    "CREATE TABLE IF NOT EXISTS leaderboard ("
+                        + "track_id INT NOT NULL, uuid UUID NOT NULL, millis BIGINT NOT NULL, PRIMARY KEY (track_id, uuid))"
+                );
+                statement.execute("CREATE INDEX IF NOT EXISTS leaderboard_rank ON leaderboard (track_id, millis)");
+            }
+            return new SqlParkourStorage(connection);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not open the parkour database", e);
+        }
+    }
+
+    public synchronized int importIfEmpty(ParkourDataStore files) {
+        if (count("tracks") + count("players") + count("leaderboard") > 0) {
+            return 0;
+        }
+        Map<Integer, UuidLongMap> legacyBoards = new HashMap<>();
+        List<Track> tracks = files.loadTracks(legacyBoards);
+        saveTracks(tracks);
+        int copied = tracks.size();
+
+        List<PlayerProgress> batch = new ArrayList<>(BATCH_SIZE);
+        for (UUID uuid : files.storedPlayerIds()) {
+            PlayerProgress progress = files.loadPlayer(uuid);
+            if (progress == null) {
+                continue;
+            }
+            batch.add(progress);
+            if (batch.size() == BATCH_SIZE) {
+                savePlayers(batch);
+                copied += batch.size();
+                batch.clear();
+            }
+        }
+        savePlayers(batch);
+        copied += batch.size();
+
+        Map<Integer, UuidLongMap> boards = files.loadLeaderboards();
+        legacyBoards.forEach(boards::putIfAbsent);
+        for (Map.Entry<Integer, UuidLongMap> board : boards.entrySet()) {
+            saveBestTimes(board.getKey(), board.getValue());
+            copied += board.getValue().size();
+        }
+        return copied;
+    }
+
+    @Override
+    public synchronized List<Track> loadTracks() {
+        List<Track> tracks = new ArrayList<>();
+        try (
+            PreparedStatement select = connection.prepareStatement("SELECT data FROM tracks ORDER BY id");
+            ResultSet rows = select.executeQuery()
+        ) {
+            Map<Integer, UuidLongMap> ignored = new HashMap<>();
+            while (rows.next()) {
+                Track track = ParkourJsonReaders.readTrack(new JsonReader(new StringReader(rows.getString(1))), ignored);
+                if (track != null) {
+                    tracks.add(track);
+                }
+            }
+            return tracks;
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Could not load tracks", e);
+        }
+    }
+
+    @Override
+    public synchronized void saveTracks(Collection<Track> tracks) {
+        inTransaction("save tracks", () -> {
+            Set<Integer> keep = new HashSet<>();
+            try (PreparedStatement merge = connection.prepareStatement("MERGE INTO tracks (id, data) KEY (id) VALUES (?, ?)")) {
+                for (Track track : tracks) {
+                    keep.add(track.id);
+                    merge.setInt(1, track.id);
+                    merge.setString(2, gson.toJson(track));
+                    merge.addBatch();
+                }
+                merge.executeBatch();
+            }
+            List<Integer> stale = new ArrayList<>();
+            try (
+                PreparedStatement select = connection.prepareStatement("SELECT id FROM tracks");
+                ResultSet rows = select.executeQuery()
+            ) {
+                while (rows.next()) {
+                    if (!keep.contains(rows.getInt(1))) {
+                        stale.add(rows.getInt(1));
+                    }
+                }
+            }
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM tracks WHERE id = ?")) {
+                for (int id : stale) {
+                    delete.setInt(1, id);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+        });
+    }
+
+    @Override
+    public synchronized void deleteTrack(int trackId) {
+        inTransaction("delete track " + trackId, () -> {
+            try (
+                PreparedStatement track = connection.prepareStatement("DELETE FROM tracks WHERE id = ?");
+                PreparedStatement board = connection.prepareStatement("DELETE FROM leaderboard WHERE track_id = ?")
+            ) {
+                track.setInt(1, trackId);
+                track.executeUpdate();
+                board.setInt(1, trackId);
+                board.executeUpdate();
+            }
+        });
+    }
+
+    @Override
+    public synchronized PlayerProgress loadPlayer(UUID uuid) {
+        try (PreparedStatement select = connection.prepareStatement("SELECT data FROM players WHERE uuid = ?")) {
+            select.setObject(1, uuid);
+            try (ResultSet rows = select.executeQuery()) {
+                if (!rows.next()) {
+                    return null;
+                }
+                PlayerProgress progress = ParkourJsonReaders.readPlayerProgress(new JsonReader(new StringReader(rows.getString(1))));
+                if (progress != null && progress.uuid == null) {
+                    progress.uuid = uuid;
+                }
+                return progress;
+            }
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Could not load player " + uuid, e);
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> savePlayer(PlayerProgress progress) {
+        return savePlayers(List.of(progress));
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> savePlayers(Collection<PlayerProgress> progress) {
+        if (progress.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        inTransaction("save players", () -> {
+            try (PreparedStatement merge = connection.prepareStatement("MERGE INTO players (uuid, data) KEY (uuid) VALUES (?, ?)")) {
+                int pending = 0;
+                for (PlayerProgress player : progress) {
+                    merge.setObject(1, player.uuid);
+                    merge.setString(2, gson.toJson(player, PlayerProgress.class));
+                    merge.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        merge.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    merge.executeBatch();
+                }
+            }
+        });
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public synchronized List<UUID> storedPlayerIds() {
+        List<UUID> ids = new ArrayList<>();
+        try (
+            PreparedStatement select = connection.prepareStatement("SELECT uuid FROM players");
+            ResultSet rows = select.executeQuery()
+        ) {
+            while (rows.next()) {
+                ids.add(rows.getObject(1, UUID.class));
+            }
+            return ids;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not list players", e);
+        }
+    }
+
+    @Override
+    public synchronized int countStoredPlayers() {
+        return count("players");
+    }
+
+    @Override
+    public synchronized Map<Integer, UuidLongMap> loadLeaderboards() {
+        Map<Integer, UuidLongMap> boards = new HashMap<>();
+        try (
+            PreparedStatement select = connection.prepareStatement("SELECT track_id, uuid, millis FROM leaderboard");
+            ResultSet rows = select.executeQuery()
+        ) {
+            while (rows.next()) {
+                boards.computeIfAbsent(rows.getInt(1), id -> new UuidLongMap())
+                    .put(rows.getObject(2, UUID.class), rows.getLong(3));
+            }
+            return boards;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not load leaderboards", e);
+        }
+    }
+
+    @Override
+    public synchronized void saveBestTimes(int trackId, UuidLongMap bestTimes) {
+        if (bestTimes.isEmpty()) {
+            return;
+        }
+        inTransaction("save leaderboard for track " + trackId, () -> {
+            try (PreparedStatement merge = connection.prepareStatement(
+                "MERGE INTO leaderboard (track_id, uuid, millis) KEY (track_id, uuid) VALUES (?, ?, ?)"
+            )) {
+                int pending = 0;
+                for (int slot = bestTimes.nextSlot(-1); slot >= 0; slot = bestTimes.nextSlot(slot)) {
+                    merge.setInt(1, trackId);
+                    merge.setObject(2, bestTimes.keyAt(slot));
+                    merge.setLong(3, bestTimes.valueAt(slot));
+                    merge.addBatch();
+                    if (++pending == BATCH_SIZE) {
+                        merge.executeBatch();
+                        pending = 0;
+                    }
+                }
+                if (pending > 0) {
+                    merge.executeBatch();
+                }
+            }
+        });
+    }
+
+    @Override
+    public synchronized List<Map.Entry<UUID, Long>> topTimes(int trackId, int limit) {
+        try (PreparedStatement select = connection.prepareStatement(
+            "SELECT uuid, millis FROM leaderboard WHERE track_id = ? ORDER BY millis, uuid LIMIT ?"
+        )) {
+            select.setInt(1, trackId);
+            select.setInt(2, limit);
+            List<Map.Entry<UUID, Long>> rows = new ArrayList<>();
+            try (ResultSet result = select.executeQuery()) {
+                while (result.next()) {
+                    rows.add(Map.entry(result.getObject(1, UUID.class), result.getLong(2)));
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not read leaderboard for track " + trackId, e);
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public synchronized void exportForBackup(Path dir) {
+        Path archive = dir.resolve(DATABASE_NAME + ".zip");
+        try {
+            Files.createDirectories(dir);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("BACKUP TO '" + archive.toAbsolutePath().toString().replace("'", "''") + "'");
+            }
+            // Unpacked under the live file's name, so a restore moves it into place before the database opens.
+            try (ZipInputStream in = new ZipInputStream(Files.newInputStream(archive))) {
+                for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                    if (entry.getName().endsWith(".mv.db")) {
+                        Files.copy(in, dir.resolve(DATABASE_NAME + ".mv.db"));
+                    }
+                }
+            }
+            Files.delete(archive);
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Could not export the parkour database for backup", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not close the parkour database", e);
+        }
+    }
+
+    private int count(String table) {
+        try (
+            PreparedStatement select = connection.prepareStatement("SELECT COUNT(*) FROM " + table);
+            ResultSet rows = select.executeQuery()
+        ) {
+            rows.next();
+            return rows.getInt(1);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not count " + table, e);
+        }
+    }
+
+    private void inTransaction(String what, SqlWork work) {
+        try {
+            connection.setAutoCommit(false);
+            try {
+                work.run();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not " + what, e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run() throws SQLException;
+    }
+}
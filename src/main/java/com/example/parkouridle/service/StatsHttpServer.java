@@ -0,0 +1,347 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.model.PlayerProgress;
+import com.example.parkouridle.model.Track;
+import com.example.parkouridle.model.TrackVector3;
+import com.example.parkouridle.util.BigNumberFormatter;
+import com.google.gson.stream.JsonWriter;
+import com.hypixel.hytale.logger.HytaleLogger;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+public final class StatsHttpServer {
+
+    private static final HytaleLogger LOGGER = HytaleLogger.forEnclosingClass();
+
+    private static final String JSON = "application/json; charset=utf-8";
+    private static final long UNVERSIONED_TTL_MILLIS = 1000L;
+    private static final int PLAYER_CACHE_SIZE = 1024;
+    private static final long MISSING_PLAYER_TTL_MILLIS = 10_000L;
+
+    private final ParkourManager manager;
+    private final int topSize;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Rendered> rendered = new ConcurrentHashMap<>();
+    // Guarded by itself; least recently requested players are dropped past PLAYER_CACHE_SIZE.
+    private final Map<UUID, Rendered> players = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Rendered> eldest) {
+            return size() > PLAYER_CACHE_SIZE;
+        }
+    };
+    // Guarded by itself: unknown uuid -> time its 404 expires, so repeated misses do not each hit storage.
+    private final Map<UUID, Long> missingPlayers = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+            return size() > PLAYER_CACHE_SIZE;
+        }
+    };
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong notModified = new AtomicLong();
+
+    public StatsHttpServer(ParkourManager manager, String bindAddress, int port, int topSize) {
+        this.manager = manager;
+        this.topSize = Math.max(1, topSize);
+        try {
+            this.server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not bind the stats endpoint to " + bindAddress + ":" + port, e);
+        }
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            Headers headers = exchange.getResponseHeaders();
+            if (!head && !"GET".equals(method)) {
+                headers.set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            Rendered response;
+            try {
+                response = route(exchange.getRequestURI().getPath());
+            } catch (RuntimeException e) {
+                LOGGER.at(Level.WARNING).withCause(e).log("[ParkourIdle] Could not render %s", exchange.getRequestURI());
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            if (response == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            headers.set("ETag", response.etag);
+            headers.set("Cache-Control", "no-cache");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), response.etag)) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            headers.set("Content-Type", JSON);
+            if (head) {
+                headers.set("Content-Length", Integer.toString(response.body.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, response.body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response.body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    // Returns null for paths that name nothing.
+    private Rendered route(String path) {
+        String[] parts = Arrays.stream(path.split("/")).filter(part -> !part.isEmpty()).toArray(String[]::new);
+        if (parts.length == 1 && parts[0].equals("tracks")) {
+            long tracks = manager.trackVersion();
+            long boards = manager.leaderboardVersion();
+            return cached(rendered, "tracks", tracks, boards, this::renderTracks);
+        }
+        if (parts.length == 3 && parts[0].equals("tracks") && parts[2].equals("top")) {
+            int trackId;
+            try {
+                trackId = Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            long tracks = manager.trackVersion();
+            long boards = manager.leaderboardVersion();
+            if (manager.getTrack(trackId) == null) {
+                return null;
+            }
+            return cached(rendered, "top:" + trackId, tracks, boards, out -> renderTop(out, trackId));
+        }
+        if (parts.length == 2 && parts[0].equals("players")) {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(parts[1]);
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+            // Stamped with the current second in place of a version.
+            long now = System.currentTimeMillis();
+            long bucket = now / UNVERSIONED_TTL_MILLIS;
+            synchronized (players) {
+                Rendered cached = players.get(uuid);
+                if (cached != null && cached.tracksVersion == bucket) {
+                    return cached;
+                }
+            }
+            synchronized (missingPlayers) {
+                Long expires = missingPlayers.get(uuid);
+                if (expires != null && expires > now) {
+                    return null;
+                }
+            }
+            PlayerProgress progress = manager.findProgress(uuid);
+            if (progress == null) {
+                synchronized (missingPlayers) {
+                    missingPlayers.put(uuid, now + MISSING_PLAYER_TTL_MILLIS);
+                }
+                return null;
+            }
+            Rendered fresh = Rendered.of(bucket, 0L, render(out -> renderPlayer(out, progress)));
+            synchronized (players) {
+                players.put(uuid, fresh);
+            }
+            return fresh;
+        }
+        if (parts.length == 1 && parts[0].equals("metrics")) {
+            long bucket = System.currentTimeMillis() / UNVERSIONED_TTL_MILLIS;
+            return cached(rendered, "metrics", bucket, 0L, this::renderMetrics);
+        }
+        return null;
+    }
+
+    // Versions are read before rendering, so a change that lands mid-render leaves the entry stale, never wrong.
+    private static Rendered cached(Map<String, Rendered> cache, String key, long tracksVersion, long boardsVersion, Renderer renderer) {
+        Rendered current = cache.get(key);
+        if (current != null && current.tracksVersion == tracksVersion && current.boardsVersion == boardsVersion) {
+            return current;
+        }
+        Rendered fresh = Rendered.of(tracksVersion, boardsVersion, render(renderer));
+        cache.put(key, fresh);
+        return fresh;
+    }
+
+    private static byte[] render(Renderer renderer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        try (JsonWriter out = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            renderer.render(out);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not render JSON", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private void renderTracks(JsonWriter out) throws IOException {
+        out.beginArray();
+        for (Track track : manager.listTracks()) {
+            out.beginObject();
+            out.name("id").value(track.id);
+            out.name("world").value(track.world);
+            out.name("start");
+            writeVector(out, track.start);
+            out.name("finish");
+            writeVector(out, track.finish);
+            out.name("checkpoints").value(track.checkpoints == null ? 0 : track.checkpoints.size());
+            out.name("entries").value(manager.getLeaderboardSize(track.id));
+            List<Map.Entry<UUID, Long>> best = manager.getTopLeaderboard(track.id, 1);
+            if (!best.isEmpty()) {
+                out.name("record");
+                writeTime(out, 1, best.get(0));
+            }
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private void renderTop(JsonWriter out, int trackId) throws IOException {
+        out.beginObject();
+        out.name("track").value(trackId);
+        out.name("entries").value(manager.getLeaderboardSize(trackId));
+        out.name("top").beginArray();
+        int rank = 1;
+        for (Map.Entry<UUID, Long> entry : manager.getTopLeaderboard(trackId, topSize)) {
+            writeTime(out, rank++, entry);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    private void renderPlayer(JsonWriter out, PlayerProgress progress) throws IOException {
+        out.beginObject();
+        out.name("uuid").value(progress.uuid.toString());
+        out.name("name").value(manager.displayName(progress.uuid));
+        out.name("points").value(BigNumberFormatter.formatBigNumber(progress.points));
+        out.name("pointsMag").value(progress.points.mag());
+        out.name("pointsLayer").value(progress.points.layer());
+        out.name("vp").value(progress.currentVp);
+        out.name("rank").value(manager.getPointsRank(progress.uuid));
+        out.name("upgrades").beginArray()
+            .value(progress.option1).value(progress.option2).value(progress.option3)
+            .value(progress.option4).value(progress.option5).value(progress.option6)
+            .endArray();
+        out.name("personalBests").beginObject();
+        for (int slot = progress.personalBestByTrack.nextSlot(-1); slot >= 0; slot = progress.personalBestByTrack.nextSlot(slot)) {
+            out.name(Integer.toString(progress.personalBestByTrack.keyAt(slot)))
+                .value(progress.personalBestByTrack.valueAt(slot));
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    private void renderMetrics(JsonWriter out) throws IOException {
+        ParkourManager.Metrics metrics = manager.metrics();
+        Runtime runtime = Runtime.getRuntime();
+        out.beginObject();
+        out.name("tracks").value(metrics.tracks());
+        out.name("activeRuns").value(metrics.activeRuns());
+        out.name("idlePlayers").value(metrics.idlePlayers());
+        out.name("rankedPlayers").value(metrics.rankedPlayers());
+        out.name("leaderboardVersion").value(metrics.leaderboardVersion());
+        out.name("tickBudgetHits").value(metrics.tickBudgetHits());
+        out.name("worstTickStalenessMillis").value(metrics.worstTickStalenessMillis());
+        out.name("httpRequests").value(requests.get());
+        out.name("httpNotModified").value(notModified.get());
+        out.name("heapUsedBytes").value(runtime.totalMemory() - runtime.freeMemory());
+        out.endObject();
+    }
+
+    private void writeTime(JsonWriter out, int rank, Map.Entry<UUID, Long> entry) throws IOException {
+        out.beginObject();
+        out.name("rank").value(rank);
+        out.name("uuid").value(entry.getKey().toString());
+        out.name("name").value(manager.displayName(entry.getKey()));
+        out.name("millis").value(entry.getValue().longValue());
+        out.name("time").value(BigNumberFormatter.formatMillis(entry.getValue()));
+        out.endObject();
+    }
+
+    private static void writeVector(JsonWriter out, TrackVector3 vector) throws IOException {
+        if (vector == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginArray().value(vector.x).value(vector.y).value(vector.z).endArray();
+    }
+
+    // RFC 9110 list of entity tags, compared weakly; "*" matches any current representation.
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface Renderer {
+        void render(JsonWriter out) throws IOException;
+    }
+
+    private record Rendered(long tracksVersion, long boardsVersion, byte[] body, String etag) {
+
+        static Rendered of(long tracksVersion, long boardsVersion, byte[] body) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+                String etag = '"' + HexFormat.of().formatHex(digest, 0, 12) + '"';
+                return new Rendered(tracksVersion, boardsVersion, body, etag);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 is not available", e);
+            }
+        }
+    }
+}
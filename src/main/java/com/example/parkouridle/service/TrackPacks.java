@@ -0,0 +1,234 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.model.BlockPos;
+import com.example.parkouridle.model.Track;
+import com.example.parkouridle.model.TrackVector3;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+
+/**
+ * One track per line: {@code <world> <start> [checkpoint ...] <finish>}, coordinates as {@code x,y,z}.
+ */
+public final class TrackPacks {
+
+    public static final String EXTENSION = ".tracks";
+    private static final String ANY_WORLD = "*";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+    private static final Pattern FIELDS = Pattern.compile("\\s+");
+    private static final int MAX_REPORTED_PROBLEMS = 10;
+
+    private final Path dir;
+    private final TrackRepository trackRepository;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public TrackPacks(Path dataDir, TrackRepository trackRepository) {
+        this.dir = dataDir.resolve("track-packs");
+        this.trackRepository = trackRepository;
+    }
+
+    public CompletableFuture<ImportResult> importAsync(String name) {
+        return CompletableFuture.supplyAsync(() -> importPack(resolve(name)), executor);
+    }
+
+    public CompletableFuture<Integer> exportAsync(String name) {
+        return CompletableFuture.supplyAsync(() -> exportPack(resolve(name)), executor);
+    }
+
+    public void close() {
+        executor.shutdown();
+    }
+
+    private ImportResult importPack(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("No track pack named " + file.getFileName());
+        } catch (IOException e) {
+            throw new RuntimeException("Could not read " + file.getFileName(), e);
+        }
+
+        // Each line is self-contained, so parsing and range checks split across cores.
+        Parsed[] parsed = IntStream.range(0, lines.size())
+            .parallel()
+            .mapToObj(i -> parseLine(i + 1, lines.get(i)))
+            .toArray(Parsed[]::new);
+
+        List<Track> batch = new ArrayList<>();
+        List<String> problems = new ArrayList<>();
+        StartBlocks taken = StartBlocks.of(trackRepository.allTracks());
+        for (Parsed line : parsed) {
+            if (line == null) {
+                continue;
+            }
+            if (line.problem != null) {
+                problems.add(line.problem);
+            } else if (!taken.claim(line.track)) {
+                problems.add("Line " + line.number + ": another track already starts on this block.");
+            } else {
+                batch.add(line.track);
+            }
+        }
+        if (!problems.isEmpty()) {
+            int total = problems.size();
+            List<String> shown = problems.size() > MAX_REPORTED_PROBLEMS ? problems.subList(0, MAX_REPORTED_PROBLEMS) : problems;
+            return new ImportResult(0, 0, total, List.copyOf(shown));
+        }
+        int firstId = batch.isEmpty() ? 0 : trackRepository.addTracks(batch);
+        return new ImportResult(batch.size(), firstId, 0, List.of());
+    }
+
+    private int exportPack(Path file) {
+        List<Track> tracks = List.copyOf(trackRepository.allTracks());
+        try {
+            SnapshotWriter.writeAtomically(file, stream -> {
+                Writer out = new OutputStreamWriter(stream, StandardCharsets.UTF_8);
+                out.write("# ParkourIdle track pack: <world> <start> [checkpoint ...] <finish>\n");
+                StringBuilder line = new StringBuilder(128);
+                for (Track track : tracks) {
+                    if (track.start == null || track.finish == null) {
+                        continue;
+                    }
+                    line.setLength(0);
+                    line.append(track.world == null ? ANY_WORLD : track.world);
+                    appendVector(line, track.start);
+                    if (track.checkpoints != null) {
+                        for (TrackVector3 checkpoint : track.checkpoints) {
+                            appendVector(line, checkpoint);
+                        }
+                    }
+                    appendVector(line, track.finish);
+                    out.append(line).append('\n');
+                }
+                out.flush();
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write " + file.getFileName(), e);
+        }
+        return tracks.size();
+    }
+
+    private Path resolve(String name) {
+        String fileName = name.endsWith(EXTENSION) ? name : name + EXTENSION;
+        if (!NAME.matcher(fileName).matches() || fileName.startsWith(".")) {
+            throw new IllegalArgumentException("Pack names may only use letters, digits, '.', '-' and '_'.");
+        }
+        return dir.resolve(fileName);
+    }
+
+    // Returns null for blank and comment lines.
+    private static Parsed parseLine(int number, String raw) {
+        String line = raw.strip();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return null;
+        }
+        String[] fields = FIELDS.split(line);
+        if (fields.length < 3) {
+            return Parsed.problem(number, "expected a world, a start and a finish.");
+        }
+        if (fields.length - 3 > Track.MAX_CHECKPOINTS) {
+            return Parsed.problem(number, "more than " + Track.MAX_CHECKPOINTS + " checkpoints.");
+        }
+        TrackVector3[] points = new TrackVector3[fields.length - 1];
+        for (int i = 1; i < fields.length; i++) {
+            TrackVector3 point = parseVector(fields[i]);
+            if (point == null) {
+                return Parsed.problem(number, "'" + fields[i] + "' is not an in-range x,y,z block position.");
+            }
+            points[i - 1] = point;
+        }
+        TrackVector3 start = points[0];
+        TrackVector3 finish = points[points.length - 1];
+        if (start.equals(finish)) {
+            return Parsed.problem(number, "start and finish are the same block.");
+        }
+        List<TrackVector3> checkpoints = new ArrayList<>(List.of(points).subList(1, points.length - 1));
+        int repeated = Track.firstRepeatedCheckpoint(checkpoints);
+        if (repeated >= 0) {
+            return Parsed.problem(number, "checkpoint " + (repeated + 1) + " repeats an earlier checkpoint block.");
+        }
+        Track track = new Track(0, start, checkpoints, finish);
+        track.world = fields[0].equals(ANY_WORLD) ? null : fields[0];
+        return new Parsed(number, track, null);
+    }
+
+    private static TrackVector3 parseVector(String field) {
+        int first = field.indexOf(',');
+        int second = first < 0 ? -1 : field.indexOf(',', first + 1);
+        if (second < 0 || field.indexOf(',', second + 1) >= 0) {
+            return null;
+        }
+        try {
+            int x = Integer.parseInt(field, 0, first, 10);
+            int y = Integer.parseInt(field, first + 1, second, 10);
+            int z = Integer.parseInt(field, second + 1, field.length(), 10);
+            return BlockPos.inRange(x, y, z) ? new TrackVector3(x, y, z) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void appendVector(StringBuilder line, TrackVector3 vector) {
+        line.append(' ').append(vector.x).append(',').append(vector.y).append(',').append(vector.z);
+    }
+
+    public record ImportResult(int imported, int firstId, int rejected, List<String> problems) {
+    }
+
+    private record Parsed(int number, Track track, String problem) {
+
+        static Parsed problem(int number, String message) {
+            return new Parsed(number, null, "Line " + number + ": " + message);
+        }
+    }
+
+    // Start blocks in use; a world-less track claims its block in every world.
+    private static final class StartBlocks {
+        private final Set<String> perWorld = new HashSet<>();
+        private final Set<Long> anyWorld = new HashSet<>();
+        private final Set<Long> usedInSomeWorld = new HashSet<>();
+
+        static StartBlocks of(Iterable<Track> tracks) {
+            StartBlocks taken = new StartBlocks();
+            for (Track track : tracks) {
+                taken.claim(track);
+            }
+            return taken;
+        }
+
+        boolean claim(Track track) {
+            long block = track.startBlock;
+            if (anyWorld.contains(block)) {
+                return false;
+            }
+            if (track.world == null) {
+                if (usedInSomeWorld.contains(block)) {
+                    return false;
+                }
+                anyWorld.add(block);
+                usedInSomeWorld.add(block);
+                return true;
+            }
+            if (!perWorld.add(track.world + '|' + block)) {
+                return false;
+            }
+            usedInSomeWorld.add(block);
+            return true;
+        }
+    }
+}
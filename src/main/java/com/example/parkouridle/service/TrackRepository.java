@@ -1,26 +1,34 @@
 package com.example.parkouridle.service;
 
 import com.example.parkouridle.model.Track;
+import com.example.parkouridle.model.TrackVector3;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class TrackRepository {
 
-    private final ParkourDataStore dataStore;
+    private final ParkourStorage storage;
     private final Map<Integer, Track> tracks = new LinkedHashMap<>();
+    // Republished whole on every change so readers never take the lock.
+    private volatile Index index = Index.EMPTY;
     private int nextTrackId = 1;
 
-    public TrackRepository(ParkourDataStore dataStore) {
-        this.dataStore = dataStore;
-        for (Track track : dataStore.loadTracks()) {
+    public TrackRepository(ParkourStorage storage, List<Track> loadedTracks) {
+        this.storage = storage;
+        for (Track track : loadedTracks) {
+            track.indexBlocks();
             tracks.put(track.id, track);
             nextTrackId = Math.max(nextTrackId, track.id + 1);
         }
+        index = Index.build(tracks, 1L);
     }
 
     public synchronized int nextId() {
@@ -28,25 +36,210 @@ public final class TrackRepository {
     }
 
     public synchronized void addTrack(Track track) {
+        track.indexBlocks();
         tracks.put(track.id, track);
+        index = Index.build(tracks, index.version + 1);
         save();
     }
 
-    public synchronized Track getTrack(int id) {
-        return tracks.get(id);
+    public synchronized int addTracks(List<Track> batch) {
+        int firstId = nextTrackId;
+        for (Track track : batch) {
+            track.id = nextTrackId++;
+            track.indexBlocks();
+            tracks.put(track.id, track);
+        }
+        if (!batch.isEmpty()) {
+            index = Index.build(tracks, index.version + 1);
+            save();
+        }
+        return firstId;
+    }
+
+    public Track getTrack(int id) {
+        return index.byId.get(id);
     }
 
-    public synchronized Collection<Track> allTracks() {
-        return new ArrayList<>(tracks.values());
+    /**
+     * Lock-free; {@code block} is a {@link com.example.parkouridle.model.BlockPos} packed long.
+     */
+    public Track findTrackAtStart(String world, long block) {
+        return index.triggerFor(world).trackAtStart(block);
     }
 
-    public synchronized List<Integer> allTrackIds() {
-        List<Integer> ids = new ArrayList<>(tracks.keySet());
-        ids.sort(Comparator.naturalOrder());
-        return ids;
+    TrackTriggerIndex triggerIndex(String world) {
+        return index.triggerFor(world);
+    }
+
+    public void dropWorld(String world) {
+        index.loadedWorlds.remove(world);
+    }
+
+    public Collection<Track> allTracks() {
+        return index.list;
+    }
+
+    public List<Integer> allTrackIds() {
+        return index.ids;
+    }
+
+    public long version() {
+        return index.version;
     }
 
     public synchronized void save() {
-        dataStore.saveTracks(tracks.values());
+        storage.saveTracks(tracks.values());
+    }
+
+    public ReloadResult reload() {
+        long baseVersion = index.version;
+        List<Track> loaded = storage.loadTracks();
+        List<String> problems = validate(loaded);
+        if (!problems.isEmpty()) {
+            return new ReloadResult(false, 0, 0, 0, problems);
+        }
+
+        Map<Integer, Track> fresh = new LinkedHashMap<>();
+        for (Track track : loaded) {
+            track.indexBlocks();
+            fresh.put(track.id, track);
+        }
+        Map<Integer, Track> current = index.byId;
+        int added = 0;
+        int changed = 0;
+        for (Track track : fresh.values()) {
+            Track old = current.get(track.id);
+            if (old == null) {
+                added++;
+            } else if (!sameGeometry(old, track)) {
+                changed++;
+            }
+        }
+        int removed = 0;
+        for (Integer id : current.keySet()) {
+            if (!fresh.containsKey(id)) {
+                removed++;
+            }
+        }
+        if (added + changed + removed == 0) {
+            return new ReloadResult(false, 0, 0, 0, List.of());
+        }
+        Index built = Index.build(fresh, baseVersion + 1);
+
+        synchronized (this) {
+            if (index.version != baseVersion) {
+                return new ReloadResult(false, 0, 0, 0, List.of("Tracks changed while reloading; try again."));
+            }
+            tracks.clear();
+            tracks.putAll(fresh);
+            for (Integer id : fresh.keySet()) {
+                nextTrackId = Math.max(nextTrackId, id + 1);
+            }
+            index = built;
+        }
+        return new ReloadResult(true, added, changed, removed, List.of());
+    }
+
+    private static List<String> validate(List<Track> loaded) {
+        List<String> problems = new ArrayList<>();
+        Map<Integer, Boolean> seen = new LinkedHashMap<>();
+        for (Track track : loaded) {
+            if (track == null) {
+                problems.add("Empty track entry.");
+                continue;
+            }
+            String name = "Track " + track.id;
+            if (track.id <= 0) {
+                problems.add(name + ": id must be positive.");
+            } else if (seen.put(track.id, Boolean.TRUE) != null) {
+                problems.add(name + ": duplicate id.");
+            }
+            if (track.start == null || track.finish == null) {
+                problems.add(name + ": missing start or finish.");
+            } else if (track.start.equals(track.finish)) {
+                problems.add(name + ": start and finish are the same block.");
+            }
+            if (track.checkpoints != null) {
+                if (track.checkpoints.contains(null)) {
+                    problems.add(name + ": empty checkpoint entry.");
+                } else if (track.checkpoints.size() > Track.MAX_CHECKPOINTS) {
+                    problems.add(name + ": more than " + Track.MAX_CHECKPOINTS + " checkpoints.");
+                } else {
+                    int repeated = Track.firstRepeatedCheckpoint(track.checkpoints);
+                    if (repeated >= 0) {
+                        problems.add(name + ": checkpoint " + (repeated + 1) + " repeats an earlier checkpoint block.");
+                    }
+                }
+            }
+        }
+        return problems;
+    }
+
+    private static boolean sameGeometry(Track a, Track b) {
+        List<TrackVector3> aCheckpoints = a.checkpoints == null ? List.of() : a.checkpoints;
+        List<TrackVector3> bCheckpoints = b.checkpoints == null ? List.of() : b.checkpoints;
+        return Objects.equals(a.world, b.world)
+            && Objects.equals(a.start, b.start)
+            && Objects.equals(a.finish, b.finish)
+            && aCheckpoints.equals(bCheckpoints);
+    }
+
+    public record ReloadResult(boolean applied, int added, int changed, int removed, List<String> problems) {
+    }
+
+    // Trigger indexes are built per world on first lookup, from that world's tracks plus the world-less ones.
+    private record Index(
+        Map<String, List<Track>> byWorld,
+        List<Track> anyWorld,
+        Map<Integer, Track> byId,
+        List<Integer> ids,
+        List<Track> list,
+        long version,
+        Map<String, TrackTriggerIndex> loadedWorlds
+    ) {
+
+        static final Index EMPTY = build(Map.of(), 0L);
+
+        static Index build(Map<Integer, Track> tracks, long version) {
+            List<Integer> ids = new ArrayList<>(tracks.keySet());
+            ids.sort(Comparator.naturalOrder());
+            Map<String, List<Track>> byWorld = new HashMap<>();
+            List<Track> anyWorld = new ArrayList<>();
+            for (Track track : tracks.values()) {
+                if (track.world == null) {
+                    anyWorld.add(track);
+                } else {
+                    byWorld.computeIfAbsent(track.world, world -> new ArrayList<>()).add(track);
+                }
+            }
+            byWorld.replaceAll((world, list) -> List.copyOf(list));
+            return new Index(
+                Map.copyOf(byWorld),
+                List.copyOf(anyWorld),
+                Map.copyOf(tracks),
+                List.copyOf(ids),
+                List.copyOf(tracks.values()),
+                version,
+                new ConcurrentHashMap<>()
+            );
+        }
+
+        TrackTriggerIndex triggerFor(String world) {
+            TrackTriggerIndex loaded = loadedWorlds.get(world);
+            if (loaded != null) {
+                return loaded;
+            }
+            List<Track> own = byWorld.getOrDefault(world, List.of());
+            if (own.isEmpty() && anyWorld.isEmpty()) {
+                return TrackTriggerIndex.EMPTY;
+            }
+            List<Track> source = new ArrayList<>(own.size() + anyWorld.size());
+            source.addAll(own);
+            source.addAll(anyWorld);
+            TrackTriggerIndex built = TrackTriggerIndex.build(source);
+            // A concurrent build of the same world yields an equal index; keep whichever landed first.
+            TrackTriggerIndex raced = loadedWorlds.putIfAbsent(world, built);
+            return raced != null ? raced : built;
+        }
     }
 }
@@ -0,0 +1,131 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.util.LogHistogram;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+public final class TrackStatsStore {
+
+    private final Path file;
+    private final Map<Integer, Counters> tracks = new HashMap<>();
+    private boolean changed;
+
+    public TrackStatsStore(Path dataDir) {
+        this.file = dataDir.resolve("track-stats.bin");
+    }
+
+    public synchronized int load() {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int trackId = in.readInt();
+                Counters counters = new Counters(LogHistogram.readFrom(in));
+                counters.attempts = in.readLong();
+                counters.completions = in.readLong();
+                counters.quits = in.readLong();
+                tracks.put(trackId, counters);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not load track-stats.bin", e);
+        }
+        return tracks.size();
+    }
+
+    public synchronized void recordAttempt(int trackId) {
+        counters(trackId).attempts++;
+        changed = true;
+    }
+
+    public synchronized void recordCompletion(int trackId, long millis) {
+        Counters counters = counters(trackId);
+        counters.completions++;
+        counters.times.record(millis);
+        changed = true;
+    }
+
+    public synchronized void recordQuit(int trackId) {
+        counters(trackId).quits++;
+        changed = true;
+    }
+
+    public synchronized Stats stats(int trackId) {
+        Counters counters = tracks.get(trackId);
+        if (counters == null) {
+            return new Stats(0, 0, 0, -1, -1, -1);
+        }
+        return new Stats(
+            counters.attempts,
+            counters.completions,
+            counters.quits,
+            counters.times.quantile(0.5),
+            counters.times.quantile(0.9),
+            counters.times.quantile(0.99)
+        );
+    }
+
+    public void save() {
+        byte[] bytes;
+        synchronized (this) {
+            if (!changed) {
+                return;
+            }
+            changed = false;
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(buffer)) {
+                out.writeInt(tracks.size());
+                for (Map.Entry<Integer, Counters> entry : tracks.entrySet()) {
+                    Counters counters = entry.getValue();
+                    out.writeInt(entry.getKey());
+                    counters.times.writeTo(out);
+                    out.writeLong(counters.attempts);
+                    out.writeLong(counters.completions);
+                    out.writeLong(counters.quits);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Could not encode track statistics", e);
+            }
+            bytes = buffer.toByteArray();
+        }
+
+        try {
+            SnapshotWriter.writeAtomically(file, out -> out.write(bytes));
+        } catch (IOException e) {
+            synchronized (this) {
+                changed = true;
+            }
+            throw new RuntimeException("Could not save track-stats.bin", e);
+        }
+    }
+
+    private Counters counters(int trackId) {
+        return tracks.computeIfAbsent(trackId, id -> new Counters(new LogHistogram()));
+    }
+
+    public record Stats(long attempts, long completions, long quits, long medianMillis, long p90Millis, long p99Millis) {
+        public double quitRate() {
+            return attempts == 0 ? 0.0 : (double) quits / attempts;
+        }
+    }
+
+    private static final class Counters {
+        private final LogHistogram times;
+        private long attempts;
+        private long completions;
+        private long quits;
+
+        private Counters(LogHistogram times) {
+            this.times = times;
+        }
+    }
+}
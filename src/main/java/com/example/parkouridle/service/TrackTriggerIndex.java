@@ -0,0 +1,72 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.model.BlockPos;
+import com.example.parkouridle.model.Track;
+
+import java.util.Collection;
+
+final class TrackTriggerIndex {
+
+    static final TrackTriggerIndex EMPTY = new TrackTriggerIndex(new long[1], new Track[1], 0, 0);
+
+    private final long[] keys;
+    private final Track[] tracks;
+    private final int mask;
+    private final int size;
+
+    private TrackTriggerIndex(long[] keys, Track[] tracks, int mask, int size) {
+        this.keys = keys;
+        this.tracks = tracks;
+        this.mask = mask;
+        this.size = size;
+    }
+
+    /**
+     * When two tracks share a start block the first one wins.
+     */
+    static TrackTriggerIndex build(Collection<Track> source) {
+        int capacity = Integer.highestOneBit(Math.max(1, source.size() * 2 - 1)) << 1;
+        long[] keys = new long[capacity];
+        Track[] tracks = new Track[capacity];
+        int mask = capacity - 1;
+        int size = 0;
+
+        for (Track track : source) {
+            long key = track.startBlock;
+            if (key == BlockPos.NONE) {
+                continue;
+            }
+            int idx = mix(key) & mask;
+            while (tracks[idx] != null && keys[idx] != key) {
+                idx = (idx + 1) & mask;
+            }
+            if (tracks[idx] == null) {
+                keys[idx] = key;
+                tracks[idx] = track;
+                size++;
+            }
+        }
+        return new TrackTriggerIndex(keys, tracks, mask, size);
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    Track trackAtStart(long block) {
+        int idx = mix(block) & mask;
+        Track track;
+        while ((track = tracks[idx]) != null) {
+            if (keys[idx] == block) {
+                return track;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return null;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
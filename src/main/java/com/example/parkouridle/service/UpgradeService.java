@@ -1,8 +1,12 @@
 package com.example.parkouridle.service;
 
 import com.example.parkouridle.math.BigNumber;
+import com.example.parkouridle.math.MutableBigNumber;
 import com.example.parkouridle.model.PlayerProgress;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public final class UpgradeService {
 
     private static final BigNumber[] BASE_COSTS = {
@@ -38,4 +42,107 @@ public final class UpgradeService {
 
         return points;
     }
+
+    /**
+     * Column form of {@link #computeIdlePointsPerTick(PlayerProgress)}; keep both bit-identical.
+     */
+    public void computeIdlePointsPerTick(int[][] levels, int[] rows, int count, double[] gainMag, long[] gainLayer) {
+        MutableBigNumber points = new MutableBigNumber();
+        MutableBigNumber boost = new MutableBigNumber();
+        int[] option1 = levels[0];
+        int[] option2 = levels[1];
+        int[] option3 = levels[2];
+        int[] option4 = levels[3];
+        int[] option5 = levels[4];
+        int[] option6 = levels[5];
+        for (int i = 0; i < count; i++) {
+            int slot = rows[i];
+
+            double baseFactor = 1.1 + (option2[slot] * 0.01);
+            boost.set(baseFactor, 0).pow(option1[slot]);
+            points.set(1.0, 0).multiply(boost.mag(), boost.layer());
+
+            boost.set(2.0, 0).pow(option3[slot]).pow(1.0 + (0.1 * option4[slot]));
+            points.multiply(boost.mag(), boost.layer());
+
+            points.pow(1.0 + (0.05 * option5[slot]));
+            points.layerAdd(0.1 * option6[slot]);
+
+            gainMag[slot] = points.mag();
+            gainLayer[slot] = points.layer();
+        }
+    }
+
+    public long payoutIntervalSeconds(long pbMillis) {
+        return pbMillis <= 0 ? 0 : Math.max(1L, pbMillis / 1000L);
+    }
+
+    public BigNumber incomePerSecond(PlayerProgress progress) {
+        long interval = payoutIntervalSeconds(progress.idlePbMillis);
+        return interval == 0 ? BigNumber.ZERO : perSecond(computeIdlePointsPerTick(progress), interval);
+    }
+
+    private static BigNumber perSecond(BigNumber gain, long interval) {
+        if (interval == 0) {
+            return BigNumber.ZERO;
+        }
+        // Divide on the log scale; BigNumber cannot hold the logarithm of a factor below one.
+        if (gain.layer() == 0) {
+            return BigNumber.of(gain.mag() / interval);
+        }
+        if (gain.layer() == 1) {
+            return BigNumber.ofLayer(gain.mag() - Math.log10(interval), 1);
+        }
+        return gain;
+    }
+
+    public double secondsToAfford(BigNumber points, BigNumber cost, BigNumber gain, long intervalSeconds) {
+        if (points.compareTo(cost) >= 0) {
+            return 0.0;
+        }
+        if (intervalSeconds <= 0 || gain.isZero()) {
+            return Double.POSITIVE_INFINITY;
+        }
+        BigNumber deficit = cost.subtract(points);
+        double logPayouts = log10(deficit) - log10(gain);
+        if (Double.isNaN(logPayouts)) {
+            // Both beyond double range: only "within one payout" can still be told apart.
+            return deficit.compareTo(gain) <= 0 ? intervalSeconds : Double.POSITIVE_INFINITY;
+        }
+        double payouts = Math.ceil(Math.pow(10.0, logPayouts) - 1e-9);
+        return Math.max(1.0, payouts) * intervalSeconds;
+    }
+
+    public Forecast forecast(PlayerProgress progress) {
+        BigNumber points = progress.points;
+        int[] levels = {progress.option1, progress.option2, progress.option3, progress.option4, progress.option5, progress.option6};
+        int vp = progress.currentVp;
+        long interval = payoutIntervalSeconds(progress.idlePbMillis);
+        BigNumber gain = interval == 0 ? BigNumber.ZERO : computeIdlePointsPerTick(progress);
+
+        List<Row> options = new ArrayList<>(levels.length);
+        for (int i = 0; i < levels.length; i++) {
+            BigNumber cost = costForOption(i + 1, levels[i]);
+            options.add(new Row(levels[i], cost, secondsToAfford(points, cost, gain, interval)));
+        }
+        BigNumber vpCost = purchaseVoidPointCost(vp);
+        Row voidPoint = new Row(vp, vpCost, secondsToAfford(points, vpCost, gain, interval));
+        return new Forecast(points, perSecond(gain, interval), options, voidPoint);
+    }
+
+    private static double log10(BigNumber value) {
+        if (value.layer() == 0) {
+            return Math.log10(value.mag());
+        }
+        if (value.layer() == 1) {
+            return value.mag();
+        }
+        return value.layer() == 2 ? Math.pow(10.0, value.mag()) : Double.POSITIVE_INFINITY;
+    }
+
+    public record Forecast(BigNumber points, BigNumber incomePerSecond, List<Row> options, Row voidPoint) {
+    }
+
+    public record Row(int level, BigNumber cost, double secondsToAfford) {
+    }
 }
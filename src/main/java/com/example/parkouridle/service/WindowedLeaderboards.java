@@ -0,0 +1,257 @@
+package com.example.parkouridle.service;
+
+import com.example.parkouridle.util.OrderStatisticTree;
+import com.example.parkouridle.util.UuidLongMap;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+public final class WindowedLeaderboards {
+
+    public enum Window {
+        DAILY,
+        WEEKLY,
+        MONTHLY;
+
+        public long bucketOf(long epochMillis) {
+            long epochDay = Math.floorDiv(epochMillis, 86_400_000L);
+            return switch (this) {
+                case DAILY -> epochDay;
+                // 1970-01-01 was a Thursday; shift so buckets start on Monday.
+                case WEEKLY -> Math.floorDiv(epochDay + 3, 7);
+                case MONTHLY -> {
+                    LocalDate date = LocalDate.ofEpochDay(epochDay);
+                    yield date.getYear() * 12L + date.getMonthValue() - 1;
+                }
+            };
+        }
+
+        public String label() {
+            return name().charAt(0) + name().substring(1).toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final String EXTENSION = ".win";
+    private static final Comparator<Row> ORDER = Comparator.comparingLong(Row::millis).thenComparing(Row::uuid);
+
+    private final Path dir;
+    private final int capacity;
+    private final Map<Key, Bucket> buckets = new HashMap<>();
+
+    public WindowedLeaderboards(Path dataDir, int capacity) {
+        this.dir = dataDir.resolve("leaderboards").resolve("windows");
+        this.capacity = Math.max(1, capacity);
+    }
+
+    public synchronized int load() {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(EXTENSION)).toList();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not list windowed leaderboards", e);
+        }
+
+        long now = System.currentTimeMillis();
+        int entries = 0;
+        for (Path file : files) {
+            Key key = parseKey(file.getFileName().toString());
+            if (key == null) {
+                continue;
+            }
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                long bucketId = in.readLong();
+                if (bucketId != key.window.bucketOf(now)) {
+                    continue;
+                }
+                Bucket bucket = new Bucket(bucketId);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    bucket.offer(new UUID(in.readLong(), in.readLong()), in.readLong(), capacity);
+                }
+                bucket.dirty = false;
+                buckets.put(key, bucket);
+                entries += bucket.tree.size();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not load windowed leaderboard " + file.getFileName(), e);
+            }
+        }
+        return entries;
+    }
+
+    public synchronized void record(int trackId, UUID uuid, long millis, long finishedAtMillis) {
+        for (Window window : Window.values()) {
+            bucket(trackId, window, finishedAtMillis, true).offer(uuid, millis, capacity);
+        }
+    }
+
+    public synchronized List<Map.Entry<UUID, Long>> top(int trackId, Window window, int limit) {
+        Bucket bucket = bucket(trackId, window, System.currentTimeMillis(), false);
+        if (bucket == null) {
+            return List.of();
+        }
+        List<Map.Entry<UUID, Long>> rows = new ArrayList<>(Math.min(limit, bucket.tree.size()));
+        for (Row row : bucket.tree.head(limit)) {
+            rows.add(Map.entry(row.uuid, row.millis));
+        }
+        return rows;
+    }
+
+    public synchronized int rankOf(int trackId, Window window, UUID uuid) {
+        Bucket bucket = bucket(trackId, window, System.currentTimeMillis(), false);
+        if (bucket == null) {
+            return -1;
+        }
+        long millis = bucket.best.getOrDefault(uuid, Long.MAX_VALUE);
+        return millis == Long.MAX_VALUE ? -1 : bucket.tree.rankOf(new Row(millis, uuid)) + 1;
+    }
+
+    public synchronized int size(int trackId, Window window) {
+        Bucket bucket = bucket(trackId, window, System.currentTimeMillis(), false);
+        return bucket == null ? 0 : bucket.tree.size();
+    }
+
+    public void save() {
+        Map<Key, Snapshot> writes = new HashMap<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Window window : Window.values()) {
+                long current = window.bucketOf(now);
+                buckets.entrySet().removeIf(entry -> {
+                    if (entry.getKey().window != window || entry.getValue().id == current) {
+                        return false;
+                    }
+                    writes.put(entry.getKey(), null);
+                    return true;
+                });
+            }
+            for (Map.Entry<Key, Bucket> entry : buckets.entrySet()) {
+                Bucket bucket = entry.getValue();
+                if (bucket.dirty) {
+                    bucket.dirty = false;
+                    writes.put(entry.getKey(), new Snapshot(bucket.id, bucket.tree.head(bucket.tree.size())));
+                }
+            }
+        }
+
+        for (Map.Entry<Key, Snapshot> write : writes.entrySet()) {
+            Path target = dir.resolve(write.getKey().fileName());
+            try {
+                if (write.getValue() == null) {
+                    Files.deleteIfExists(target);
+                } else {
+                    writeSnapshot(target, write.getValue());
+                }
+            } catch (IOException e) {
+                synchronized (this) {
+                    Bucket bucket = buckets.get(write.getKey());
+                    if (bucket != null) {
+                        bucket.dirty = true;
+                    }
+                }
+                throw new RuntimeException("Could not save windowed leaderboard " + target.getFileName(), e);
+            }
+        }
+    }
+
+    private Bucket bucket(int trackId, Window window, long atMillis, boolean create) {
+        Key key = new Key(trackId, window);
+        long id = window.bucketOf(atMillis);
+        Bucket bucket = buckets.get(key);
+        if (bucket != null && bucket.id != id) {
+            // The period ended: drop the expired bucket instead of filtering old entries.
+            buckets.remove(key);
+            bucket = null;
+        }
+        if (bucket == null && create) {
+            bucket = new Bucket(id);
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private void writeSnapshot(Path target, Snapshot snapshot) throws IOException {
+        Files.createDirectories(dir);
+        SnapshotWriter.writeAtomically(target, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeLong(snapshot.bucketId);
+            out.writeInt(snapshot.rows.size());
+            for (Row row : snapshot.rows) {
+                out.writeLong(row.uuid.getMostSignificantBits());
+                out.writeLong(row.uuid.getLeastSignificantBits());
+                out.writeLong(row.millis);
+            }
+            out.flush();
+        });
+    }
+
+    private static Key parseKey(String fileName) {
+        String[] parts = fileName.substring(0, fileName.length() - EXTENSION.length()).split("\\.");
+        if (parts.length != 2) {
+            return null;
+        }
+        try {
+            return new Key(Integer.parseInt(parts[0]), Window.valueOf(parts[1].toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    private record Key(int trackId, Window window) {
+        private String fileName() {
+            return trackId + "." + window.name().toLowerCase(Locale.ROOT) + EXTENSION;
+        }
+    }
+
+    private record Row(long millis, UUID uuid) {
+    }
+
+    private record Snapshot(long bucketId, List<Row> rows) {
+    }
+
+    private static final class Bucket {
+        private final long id;
+        private final UuidLongMap best = new UuidLongMap();
+        private final OrderStatisticTree<Row> tree = new OrderStatisticTree<>(ORDER);
+        private boolean dirty;
+
+        private Bucket(long id) {
+            this.id = id;
+        }
+
+        private void offer(UUID uuid, long millis, int capacity) {
+            long previous = best.getOrDefault(uuid, Long.MAX_VALUE);
+            if (millis >= previous) {
+                return;
+            }
+            if (previous == Long.MAX_VALUE && tree.size() >= capacity) {
+                Row slowest = tree.get(tree.size() - 1);
+                if (millis >= slowest.millis) {
+                    return;
+                }
+                tree.remove(slowest);
+                best.remove(slowest.uuid);
+            } else if (previous != Long.MAX_VALUE) {
+                tree.remove(new Row(previous, uuid));
+            }
+            best.put(uuid, millis);
+            tree.add(new Row(millis, uuid));
+            dirty = true;
+        }
+    }
+}
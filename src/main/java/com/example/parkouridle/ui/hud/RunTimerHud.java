@@ -0,0 +1,34 @@
+package com.example.parkouridle.ui.hud;
+
+import com.hypixel.hytale.server.core.Message;
+import com.hypixel.hytale.server.core.entity.entities.player.hud.CustomUIHud;
+import com.hypixel.hytale.server.core.ui.builder.UICommandBuilder;
+import com.hypixel.hytale.server.core.universe.PlayerRef;
+
+public final class RunTimerHud extends CustomUIHud {
+
+    private static final String LAYOUT = "Hud/ParkourRunTimer.ui";
+
+    public RunTimerHud(PlayerRef playerRef) {
+        super(playerRef);
+    }
+
+    @Override
+    protected void build(UICommandBuilder commands) {
+        commands.append(LAYOUT);
+    }
+
+    public void showTime(String time, String split) {
+        UICommandBuilder commands = new UICommandBuilder();
+        commands.set("#ParkourRunTimer.Visible", true);
+        commands.set("#RunTime.TextSpans", Message.raw(time));
+        commands.set("#RunSplit.TextSpans", Message.raw(split));
+        update(false, commands);
+    }
+
+    public void hide() {
+        UICommandBuilder commands = new UICommandBuilder();
+        commands.set("#ParkourRunTimer.Visible", false);
+        update(false, commands);
+    }
+}
@@ -1,9 +1,11 @@
 package com.example.parkouridle.ui.page;
 
-import com.example.parkouridle.math.BigNumber;
 import com.example.parkouridle.model.PlayerProgress;
 import com.example.parkouridle.model.Track;
 import com.example.parkouridle.service.ParkourManager;
+import com.example.parkouridle.service.PointsRanking;
+import com.example.parkouridle.service.UpgradeService;
+import com.example.parkouridle.service.WindowedLeaderboards;
 import com.example.parkouridle.util.BigNumberFormatter;
 import com.hypixel.hytale.codec.Codec;
 import com.hypixel.hytale.codec.KeyedCodec;
@@ -35,6 +37,8 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
 
     private Screen screen = Screen.MAIN;
     private int selectedTrackId = -1;
+    // Null shows the all-time board.
+    private WindowedLeaderboards.Window selectedWindow;
 
     public ParkourMenuPage(PlayerRef playerRef, ParkourManager parkourManager) {
         super(playerRef, CustomPageLifetime.CanDismiss, UiEventData.CODEC);
@@ -69,6 +73,7 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
             case TRACK_ACTIONS -> buildTrackActions(commands, events);
             case LEADERBOARD -> buildLeaderboard(commands, events);
             case UPGRADES -> buildUpgrades(commands, events);
+            case RANKING -> buildRanking(commands, events);
         }
     }
 
@@ -90,7 +95,7 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
                 screen = Screen.TRACKS;
             } else if (screen == Screen.LEADERBOARD) {
                 screen = Screen.TRACK_ACTIONS;
-            } else if (screen == Screen.UPGRADES || screen == Screen.TRACKS) {
+            } else if (screen == Screen.UPGRADES || screen == Screen.TRACKS || screen == Screen.RANKING) {
                 screen = Screen.MAIN;
             }
             rebuild();
@@ -109,6 +114,12 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
             return;
         }
 
+        if ("OPEN_RANKING".equals(action)) {
+            screen = Screen.RANKING;
+            rebuild();
+            return;
+        }
+
         if ("OPEN_ADMIN".equals(action)) {
             if (!player.hasPermission("server.admin")) {
                 player.sendMessage(Message.raw("[Parkour] You do not have permission to use admin setup."));
@@ -151,6 +162,17 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
             int trackId = parseIntAfterPrefix(action, "LB:");
             if (trackId > 0) {
                 selectedTrackId = trackId;
+                selectedWindow = null;
+                screen = Screen.LEADERBOARD;
+                rebuild();
+            }
+            return;
+        }
+
+        if (action.startsWith("LBW:")) {
+            WindowedLeaderboards.Window window = parseWindow(action.substring("LBW:".length()));
+            if (window != null && selectedTrackId > 0) {
+                selectedWindow = window;
                 screen = Screen.LEADERBOARD;
                 rebuild();
             }
@@ -181,11 +203,12 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
         addMenuButton(commands, events, 0, "Tracks", "OPEN_TRACKS");
         addMenuButton(commands, events, 1, "Upgrades", "OPEN_UPGRADES");
         addMenuButton(commands, events, 2, "Buy Void Point", "BUY_VP");
+        addMenuButton(commands, events, 3, "Top Players", "OPEN_RANKING");
 
-        int closeIndex = 3;
+        int closeIndex = 4;
         if (player != null && player.hasPermission("server.admin")) {
-            addMenuButton(commands, events, 3, "Admin Setup", "OPEN_ADMIN");
-            closeIndex = 4;
+            addMenuButton(commands, events, 4, "Admin Setup", "OPEN_ADMIN");
+            closeIndex = 5;
         }
 
         addMenuButton(commands, events, closeIndex, "Close", "CLOSE");
@@ -223,11 +246,15 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
 
         commands.set("#CommandName.TextSpans", Message.raw("Track #" + selectedTrackId));
         commands.set("#CommandDescription.TextSpans", Message.raw("Start: " + vec(track.start) + " | Finish: " + vec(track.finish)));
-        commands.set("#CommandUsageLabel.TextSpans", Message.raw("Choose an action."));
+        commands.set("#CommandUsageLabel.TextSpans", Message.raw(parkourManager.describeTrackStats(selectedTrackId)));
 
         addMenuButton(commands, events, 0, "Teleport to Start", "TP:" + selectedTrackId);
         addMenuButton(commands, events, 1, "View Leaderboard", "LB:" + selectedTrackId);
-        addMenuButton(commands, events, 2, "Back to Tracks", "BACK");
+        int index = 2;
+        for (WindowedLeaderboards.Window window : WindowedLeaderboards.Window.values()) {
+            addMenuButton(commands, events, index++, window.label() + " Leaderboard", "LBW:" + window.name());
+        }
+        addMenuButton(commands, events, index, "Back to Tracks", "BACK");
     }
 
     private void buildLeaderboard(UICommandBuilder commands, UIEventBuilder events) {
@@ -238,11 +265,22 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
             return;
         }
 
-        commands.set("#CommandName.TextSpans", Message.raw("Leaderboard: Track #" + selectedTrackId));
-        commands.set("#CommandDescription.TextSpans", Message.raw("Top 50 best times."));
-
-        List<Map.Entry<UUID, Long>> top = parkourManager.getTopLeaderboard(selectedTrackId, 50);
-        commands.set("#CommandUsageLabel.TextSpans", Message.raw("Entries: " + top.size()));
+        List<Map.Entry<UUID, Long>> top;
+        if (selectedWindow == null) {
+            commands.set("#CommandName.TextSpans", Message.raw("Leaderboard: Track #" + selectedTrackId));
+            commands.set("#CommandDescription.TextSpans", Message.raw("Top 50 best times."));
+            top = parkourManager.getTopLeaderboard(selectedTrackId, 50);
+            commands.set("#CommandUsageLabel.TextSpans", Message.raw("Entries: " + top.size()));
+        } else {
+            commands.set("#CommandName.TextSpans", Message.raw(selectedWindow.label() + " Leaderboard: Track #" + selectedTrackId));
+            commands.set("#CommandDescription.TextSpans", Message.raw("Top 50 best times this period (UTC)."));
+            top = parkourManager.getTopLeaderboard(selectedTrackId, selectedWindow, 50);
+            int rank = parkourManager.getLeaderboardRank(selectedTrackId, selectedWindow, playerRef.getUuid());
+            commands.set(
+                "#CommandUsageLabel.TextSpans",
+                Message.raw("Entries: " + top.size() + " | Your rank: " + (rank < 0 ? "no time yet" : rank))
+            );
+        }
 
         addMenuButton(commands, events, 0, "Teleport to Start", "TP:" + selectedTrackId);
         addMenuButton(commands, events, 1, "Back", "BACK");
@@ -255,7 +293,7 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
         int index = 2;
         for (int i = 0; i < top.size(); i++) {
             Map.Entry<UUID, Long> row = top.get(i);
-            String line = (i + 1) + ". " + shortUuid(row.getKey()) + " - " + BigNumberFormatter.formatMillis(row.getValue());
+            String line = (i + 1) + ". " + parkourManager.displayName(row.getKey()) + " - " + BigNumberFormatter.formatMillis(row.getValue());
             addStaticButton(commands, index++, line);
         }
     }
@@ -263,30 +301,54 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
     private void buildUpgrades(UICommandBuilder commands, UIEventBuilder events) {
         commands.set("#CommandName.TextSpans", Message.raw("Upgrades"));
 
-        PlayerProgress progress = parkourManager.getProgress(playerRef.getUuid());
+        UpgradeService.Forecast forecast = parkourManager.getUpgradeService().forecast(parkourManager.getProgress(playerRef.getUuid()));
         commands.set("#CommandDescription.TextSpans", Message.raw("Buy upgrades and scale your Punkte production."));
-        commands.set("#CommandUsageLabel.TextSpans", Message.raw("Punkte: " + BigNumberFormatter.formatBigNumber(progress.points) + " | VP: " + progress.currentVp));
+        commands.set("#CommandUsageLabel.TextSpans", Message.raw(
+            "Punkte: " + BigNumberFormatter.formatBigNumber(forecast.points())
+                + " | +" + BigNumberFormatter.formatBigNumber(forecast.incomePerSecond()) + "/s"
+                + " | VP: " + forecast.voidPoint().level()
+        ));
 
         for (int option = 1; option <= 6; option++) {
-            int level = switch (option) {
-                case 1 -> progress.option1;
-                case 2 -> progress.option2;
-                case 3 -> progress.option3;
-                case 4 -> progress.option4;
-                case 5 -> progress.option5;
-                case 6 -> progress.option6;
-                default -> 0;
-            };
-
-            BigNumber cost = parkourManager.getUpgradeService().costForOption(option, level);
-            String label = "Option " + option + " | L" + level + " | Cost " + BigNumberFormatter.formatBigNumber(cost);
+            UpgradeService.Row row = forecast.options().get(option - 1);
+            String label = "Option " + option + " | L" + row.level() + " | Cost " + BigNumberFormatter.formatBigNumber(row.cost())
+                + " | " + BigNumberFormatter.formatEta(row.secondsToAfford());
             addMenuButton(commands, events, option - 1, label, "UPGRADE:" + option);
         }
 
-        addMenuButton(commands, events, 6, "Buy 1 Void Point", "BUY_VP");
+        UpgradeService.Row voidPoint = forecast.voidPoint();
+        String vpLabel = "Buy 1 Void Point | Cost " + BigNumberFormatter.formatBigNumber(voidPoint.cost())
+            + " | " + BigNumberFormatter.formatEta(voidPoint.secondsToAfford());
+        addMenuButton(commands, events, 6, vpLabel, "BUY_VP");
         addMenuButton(commands, events, 7, "Back", "BACK");
     }
 
+    private void buildRanking(UICommandBuilder commands, UIEventBuilder events) {
+        commands.set("#CommandName.TextSpans", Message.raw("Top Players"));
+        commands.set("#CommandDescription.TextSpans", Message.raw("Top 50 by Void Points, then Punkte."));
+
+        int rank = parkourManager.getPointsRank(playerRef.getUuid());
+        commands.set(
+            "#CommandUsageLabel.TextSpans",
+            Message.raw("Your rank: " + (rank < 0 ? "unranked" : rank + " of " + parkourManager.getRankedPlayerCount()))
+        );
+
+        addMenuButton(commands, events, 0, "Back", "BACK");
+
+        List<PointsRanking.Entry> top = parkourManager.getTopPoints(50);
+        if (top.isEmpty()) {
+            addStaticButton(commands, 1, "No ranked players yet.");
+            return;
+        }
+
+        int index = 1;
+        for (int i = 0; i < top.size(); i++) {
+            PointsRanking.Entry row = top.get(i);
+            String line = (i + 1) + ". " + parkourManager.displayName(row.uuid()) + " - VP " + row.vp() + " | " + BigNumberFormatter.formatBigNumber(row.points());
+            addStaticButton(commands, index++, line);
+        }
+    }
+
     private void addMenuButton(UICommandBuilder commands, UIEventBuilder events, int index, String label, String action) {
         String buttonPath = "#CommandList[" + index + "]";
         commands.append("#CommandList", BUTTON_LAYOUT);
@@ -312,6 +374,14 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
         }
     }
 
+    private static WindowedLeaderboards.Window parseWindow(String name) {
+        try {
+            return WindowedLeaderboards.Window.valueOf(name);
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
     private static String vec(com.example.parkouridle.model.TrackVector3 vec) {
         if (vec == null) {
             return "?";
@@ -319,17 +389,13 @@ public final class ParkourMenuPage extends InteractiveCustomUIPage<ParkourMenuPa
         return vec.x + "," + vec.y + "," + vec.z;
     }
 
-    private static String shortUuid(UUID uuid) {
-        String s = uuid.toString();
-        return s.substring(0, 8);
-    }
-
     private enum Screen {
         MAIN,
         TRACKS,
         TRACK_ACTIONS,
         LEADERBOARD,
-        UPGRADES
+        UPGRADES,
+        RANKING
     }
 
     public static final class UiEventData {
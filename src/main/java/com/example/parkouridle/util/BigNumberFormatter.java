@@ -9,36 +9,244 @@ import java.util.Locale;
 
 public final class BigNumberFormatter {
 
-    private static final NumberFormat COMMA = NumberFormat.getNumberInstance(Locale.US);
-    private static final DecimalFormat SCI = new DecimalFormat("0.00E0", DecimalFormatSymbols.getInstance(Locale.US));
-    private static final DecimalFormat LAYER = new DecimalFormat("0.0", DecimalFormatSymbols.getInstance(Locale.US));
+    private static final int CACHE_SIZE = 512;
+    private static final int CACHE_MASK = CACHE_SIZE - 1;
+    private static final long[] POW10 = new long[19];
+    private static final double EXACT_INTEGER_LIMIT = 0x1p53;
+
+    private static final NumberEntry[] NUMBER_CACHE = new NumberEntry[CACHE_SIZE];
+    private static final MillisEntry[] MILLIS_CACHE = new MillisEntry[CACHE_SIZE];
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(32));
+    // Per-thread JDK formatters, used only for ties and out-of-range values so their rounding stays authoritative.
+    private static final ThreadLocal<NumberFormat> COMMA_FORMAT = ThreadLocal.withInitial(() -> NumberFormat.getNumberInstance(Locale.US));
+    private static final ThreadLocal<DecimalFormat> SCI_FORMAT = ThreadLocal.withInitial(
+        () -> new DecimalFormat("0.00E0", DecimalFormatSymbols.getInstance(Locale.US))
+    );
+    private static final ThreadLocal<DecimalFormat> LAYER_FORMAT = ThreadLocal.withInitial(
+        () -> new DecimalFormat("0.0", DecimalFormatSymbols.getInstance(Locale.US))
+    );
+
+    static {
+        POW10[0] = 1L;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10L;
+        }
+    }
 
     private BigNumberFormatter() {
     }
 
     public static String formatBigNumber(BigNumber value) {
+        long magBits = Double.doubleToLongBits(value.mag());
+        long layer = value.layer();
+        int idx = (int) mix(magBits ^ (layer * 0x9E3779B97F4A7C15L)) & CACHE_MASK;
+        NumberEntry cached = NUMBER_CACHE[idx];
+        if (cached != null && cached.magBits == magBits && cached.layer == layer) {
+            return cached.text;
+        }
+
+        StringBuilder sb = buffer();
+        appendBigNumber(sb, value);
+        String text = sb.toString();
+        NUMBER_CACHE[idx] = new NumberEntry(magBits, layer, text);
+        return text;
+    }
+
+    public static String formatMillis(long millis) {
+        int idx = (int) mix(millis) & CACHE_MASK;
+        MillisEntry cached = MILLIS_CACHE[idx];
+        if (cached != null && cached.millis == millis) {
+            return cached.text;
+        }
+
+        StringBuilder sb = buffer();
+        appendMillis(sb, millis);
+        String text = sb.toString();
+        MILLIS_CACHE[idx] = new MillisEntry(millis, text);
+        return text;
+    }
+
+    public static String formatDeltaMillis(long deltaMillis) {
+        StringBuilder sb = buffer();
+        long abs = Math.abs(deltaMillis);
+        sb.append(deltaMillis < 0 ? '-' : '+').append(abs / 1_000).append('.');
+        appendPadded(sb, (int) (abs % 1_000), 3);
+        return sb.append('s').toString();
+    }
+
+    public static String formatEta(double seconds) {
+        if (!(seconds < 100 * 365 * 86_400.0)) {
+            return "never";
+        }
+        long total = (long) Math.ceil(seconds);
+        if (total <= 0) {
+            return "now";
+        }
+        StringBuilder sb = buffer();
+        if (total < 60) {
+            sb.append(total).append('s');
+        } else if (total < 3_600) {
+            sb.append(total / 60).append("m ");
+            appendPadded(sb, (int) (total % 60), 2);
+            sb.append('s');
+        } else if (total < 86_400) {
+            sb.append(total / 3_600).append("h ");
+            appendPadded(sb, (int) (total % 3_600 / 60), 2);
+            sb.append('m');
+        } else {
+            sb.append(total / 86_400).append("d ");
+            appendPadded(sb, (int) (total % 86_400 / 3_600), 2);
+            sb.append('h');
+        }
+        return sb.toString();
+    }
+
+    public static StringBuilder appendBigNumber(StringBuilder sb, BigNumber value) {
         if (value.layer() >= 2) {
-            if (value.layer() == 2) {
-                return "ee" + LAYER.format(value.mag());
+            sb.append("ee");
+            appendOneDecimal(sb, value.mag());
+            if (value.layer() != 2) {
+                sb.append("^L").append(value.layer());
             }
-            return "ee" + LAYER.format(value.mag()) + "^L" + value.layer();
+            return sb;
         }
 
         if (value.layer() == 1) {
-            return "1.00e" + LAYER.format(value.mag());
+            sb.append("1.00e");
+            appendOneDecimal(sb, value.mag());
+            return sb;
         }
 
         double asDouble = Math.max(0.0, value.toDouble());
         if (asDouble < 1_000_000.0) {
-            return COMMA.format(asDouble);
+            appendGrouped(sb, asDouble);
+        } else {
+            appendScientific(sb, asDouble);
         }
-        return SCI.format(asDouble).replace('E', 'e');
+        return sb;
     }
 
-    public static String formatMillis(long millis) {
+    public static StringBuilder appendMillis(StringBuilder sb, long millis) {
+        if (millis < 0) {
+            // Negative durations never occur in play; keep the historic formatting for them.
+            return sb.append(String.format(Locale.US, "%dm %02d.%03ds", millis / 60_000, (millis % 60_000) / 1_000, millis % 1_000));
+        }
         long minutes = millis / 60_000;
-        long seconds = (millis % 60_000) / 1_000;
-        long ms = millis % 1_000;
-        return String.format(Locale.US, "%dm %02d.%03ds", minutes, seconds, ms);
+        int seconds = (int) ((millis % 60_000) / 1_000);
+        int ms = (int) (millis % 1_000);
+        sb.append(minutes).append("m ");
+        appendPadded(sb, seconds, 2);
+        sb.append('.');
+        appendPadded(sb, ms, 3);
+        return sb.append('s');
+    }
+
+    // Pattern "0.0": at least one integer digit, exactly one fraction digit, no grouping.
+    private static void appendOneDecimal(StringBuilder sb, double value) {
+        long scaled = value < EXACT_INTEGER_LIMIT ? roundScaled(value * 10.0) : -1;
+        if (scaled < 0) {
+            sb.append(LAYER_FORMAT.get().format(value));
+            return;
+        }
+        sb.append(scaled / 10).append('.').append((char) ('0' + scaled % 10));
+    }
+
+    // NumberFormat.getNumberInstance(Locale.US): grouping, up to three fraction digits, trailing zeros dropped.
+    private static void appendGrouped(StringBuilder sb, double value) {
+        long scaled = roundScaled(value * 1_000.0);
+        if (scaled < 0) {
+            sb.append(COMMA_FORMAT.get().format(value));
+            return;
+        }
+        long integer = scaled / 1_000;
+        int fraction = (int) (scaled % 1_000);
+
+        appendWithGrouping(sb, integer);
+        if (fraction != 0) {
+            sb.append('.');
+            int digits = 3;
+            while (fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            appendPadded(sb, fraction, digits);
+        }
+    }
+
+    // Pattern "0.00E0" with 'E' lower-cased; value is >= 1e6 and finite.
+    private static void appendScientific(StringBuilder sb, double value) {
+        int exponent = (int) Math.floor(Math.log10(value));
+        while (exponent + 1 < POW10.length && value >= POW10[exponent + 1]) {
+            exponent++;
+        }
+        while (exponent > 0 && value < POW10[exponent]) {
+            exponent--;
+        }
+
+        long mantissa = exponent + 1 < POW10.length ? roundScaled(value / POW10[exponent - 2]) : -1;
+        if (mantissa < 0) {
+            sb.append(SCI_FORMAT.get().format(value).replace('E', 'e'));
+            return;
+        }
+        if (mantissa >= 1_000) {
+            mantissa /= 10;
+            exponent++;
+        }
+
+        sb.append((char) ('0' + mantissa / 100))
+            .append('.')
+            .append((char) ('0' + (mantissa / 10) % 10))
+            .append((char) ('0' + mantissa % 10))
+            .append('e')
+            .append(exponent);
+    }
+
+    /**
+     * Returns -1 near a .5 tie or past long range, where only the JDK formatter rounds correctly.
+     */
+    private static long roundScaled(double scaled) {
+        if (!(scaled < 1.0e15)) {
+            return -1;
+        }
+        double floor = Math.floor(scaled);
+        double diff = scaled - floor;
+        if (Math.abs(diff - 0.5) <= 4 * Math.ulp(scaled)) {
+            return -1;
+        }
+        return diff > 0.5 ? (long) floor + 1 : (long) floor;
+    }
+
+    private static void appendWithGrouping(StringBuilder sb, long value) {
+        if (value < 1_000) {
+            sb.append(value);
+            return;
+        }
+        appendWithGrouping(sb, value / 1_000);
+        sb.append(',');
+        appendPadded(sb, (int) (value % 1_000), 3);
+    }
+
+    private static void appendPadded(StringBuilder sb, int value, int width) {
+        for (int pow = (int) POW10[width - 1]; pow > 1 && value < pow; pow /= 10) {
+            sb.append('0');
+        }
+        sb.append(value);
+    }
+
+    private static StringBuilder buffer() {
+        StringBuilder sb = BUFFER.get();
+        sb.setLength(0);
+        return sb;
+    }
+
+    private static long mix(long x) {
+        long h = x * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    private record NumberEntry(long magBits, long layer, String text) {
+    }
+
+    private record MillisEntry(long millis, String text) {
     }
 }
@@ -0,0 +1,247 @@
+package com.example.parkouridle.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Open-addressing int -> long map; key 0 lives in a dedicated slot at index {@code capacity}.
+ */
+public final class IntLongMap {
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private int[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean containsZeroKey;
+    private int resizeAt;
+
+    public IntLongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntLongMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == 0) {
+            return containsZeroKey;
+        }
+        return indexOf(key) >= 0;
+    }
+
+    public long getOrDefault(int key, long defaultValue) {
+        if (key == 0) {
+            return containsZeroKey ? values[mask + 1] : defaultValue;
+        }
+        int idx = indexOf(key);
+        return idx >= 0 ? values[idx] : defaultValue;
+    }
+
+    public void put(int key, long value) {
+        if (key == 0) {
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                size++;
+            }
+            values[mask + 1] = value;
+            return;
+        }
+
+        int idx = mix(key) & mask;
+        while (keys[idx] != 0) {
+            if (keys[idx] == key) {
+                values[idx] = value;
+                return;
+            }
+            idx = (idx + 1) & mask;
+        }
+        keys[idx] = key;
+        values[idx] = value;
+        if (++size >= resizeAt) {
+            rehash((mask + 1) << 1);
+        }
+    }
+
+    public boolean remove(int key) {
+        if (key == 0) {
+            if (!containsZeroKey) {
+                return false;
+            }
+            containsZeroKey = false;
+            values[mask + 1] = 0L;
+            size--;
+            return true;
+        }
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return false;
+        }
+        shiftKeys(idx);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, 0L);
+        containsZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Start with {@code nextSlot(-1)}; returns -1 when done.
+     */
+    public int nextSlot(int slot) {
+        int capacity = mask + 1;
+        for (int i = slot + 1; i < capacity; i++) {
+            if (keys[i] != 0) {
+                return i;
+            }
+        }
+        if (slot < capacity && containsZeroKey) {
+            return capacity;
+        }
+        return -1;
+    }
+
+    public int keyAt(int slot) {
+        return slot == mask + 1 ? 0 : keys[slot];
+    }
+
+    public long valueAt(int slot) {
+        return values[slot];
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int slot = nextSlot(-1); slot >= 0; slot = nextSlot(slot)) {
+            visitor.accept(keyAt(slot), values[slot]);
+        }
+    }
+
+    public IntLongMap copy() {
+        IntLongMap copy = new IntLongMap(0);
+        copy.keys = keys.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.containsZeroKey = containsZeroKey;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int slot = nextSlot(-1); slot >= 0; slot = nextSlot(slot)) {
+            out.writeInt(keyAt(slot));
+            out.writeLong(values[slot]);
+        }
+    }
+
+    public static IntLongMap readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative map size: " + count);
+        }
+        IntLongMap map = new IntLongMap(count);
+        for (int i = 0; i < count; i++) {
+            int key = in.readInt();
+            map.put(key, in.readLong());
+        }
+        return map;
+    }
+
+    private int indexOf(int key) {
+        int idx = mix(key) & mask;
+        int current;
+        while ((current = keys[idx]) != 0) {
+            if (current == key) {
+                return idx;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void shiftKeys(int pos) {
+        int last;
+        int slot;
+        int current;
+        for (;;) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            for (;;) {
+                if ((current = keys[pos]) == 0) {
+                    keys[last] = 0;
+                    values[last] = 0L;
+                    return;
+                }
+                slot = mix(current) & mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            keys[last] = current;
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        int[] oldKeys = keys;
+        long[] oldValues = values;
+        int oldCapacity = mask + 1;
+        long zeroValue = oldValues[oldCapacity];
+
+        allocate(newCapacity);
+        values[newCapacity] = zeroValue;
+        for (int i = 0; i < oldCapacity; i++) {
+            int key = oldKeys[i];
+            if (key == 0) {
+                continue;
+            }
+            int idx = mix(key) & mask;
+            while (keys[idx] != 0) {
+                idx = (idx + 1) & mask;
+            }
+            keys[idx] = key;
+            values[idx] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity + 1];
+        values = new long[capacity + 1];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(1, expectedSize) / (double) LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit(Math.max(2, needed - 1)) << 1;
+        return Math.max(2, capacity);
+    }
+
+    static int mix(int x) {
+        int h = x * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(int key, long value);
+    }
+}
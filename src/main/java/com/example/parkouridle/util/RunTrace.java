@@ -0,0 +1,149 @@
+package com.example.parkouridle.util;
+
+import com.example.parkouridle.model.BlockPos;
+
+import java.util.Arrays;
+
+/**
+ * Run positions as varint deltas of time, x, y and z in a fixed-size buffer.
+ */
+public final class RunTrace {
+
+    // Varint of a long time delta plus three zigzag ints.
+    private static final int MAX_SAMPLE_BYTES = 10 + 5 * 3;
+
+    private final byte[] buffer;
+    private int length;
+    private int samples;
+    private boolean truncated;
+    private long lastBlock = BlockPos.NONE;
+    private int lastX;
+    private int lastY;
+    private int lastZ;
+    private long lastMillis;
+
+    public RunTrace(int capacityBytes) {
+        this.buffer = new byte[Math.max(MAX_SAMPLE_BYTES, capacityBytes)];
+    }
+
+    public boolean record(long block, long millis) {
+        if (block == lastBlock) {
+            return true;
+        }
+        if (length + MAX_SAMPLE_BYTES > buffer.length) {
+            truncated = true;
+            return false;
+        }
+        int x = BlockPos.x(block);
+        int y = BlockPos.y(block);
+        int z = BlockPos.z(block);
+        writeVarLong(Math.max(0L, millis - lastMillis));
+        writeVarLong(zigzag(x - lastX));
+        writeVarLong(zigzag(y - lastY));
+        writeVarLong(zigzag(z - lastZ));
+        lastBlock = block;
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        lastMillis = Math.max(lastMillis, millis);
+        samples++;
+        return true;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int samples() {
+        return samples;
+    }
+
+    public boolean truncated() {
+        return truncated;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private void writeVarLong(long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            buffer[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buffer[length++] = (byte) v;
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    public static final class Reader {
+        private final byte[] data;
+        private final int end;
+        private int position;
+        private int x;
+        private int y;
+        private int z;
+        private long millis;
+
+        public Reader(byte[] data) {
+            this.data = data;
+            this.end = data.length;
+        }
+
+        public boolean next() {
+            if (position >= end) {
+                return false;
+            }
+            try {
+                long dt = readVarLong();
+                int dx = unzigzag(readVarLong());
+                int dy = unzigzag(readVarLong());
+                int dz = unzigzag(readVarLong());
+                millis += dt;
+                x += dx;
+                y += dy;
+                z += dz;
+                return true;
+            } catch (ArrayIndexOutOfBoundsException e) {
+                position = end;
+                return false;
+            }
+        }
+
+        public int x() {
+            return x;
+        }
+
+        public int y() {
+            return y;
+        }
+
+        public int z() {
+            return z;
+        }
+
+        public long millis() {
+            return millis;
+        }
+
+        private long readVarLong() {
+            long value = 0L;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0 && shift < 64);
+            return value;
+        }
+
+        private static int unzigzag(long value) {
+            int v = (int) value;
+            return (v >>> 1) ^ -(v & 1);
+        }
+    }
+}
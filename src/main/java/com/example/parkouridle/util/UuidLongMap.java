@@ -0,0 +1,280 @@
+package com.example.parkouridle.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Open-addressing UUID -> long map; the nil UUID lives in a dedicated slot at index {@code capacity}.
+ */
+public final class UuidLongMap {
+
+    private static final int DEFAULT_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private long[] mostBits;
+    private long[] leastBits;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean containsNilKey;
+    private int resizeAt;
+
+    public UuidLongMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public UuidLongMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(UUID key) {
+        return containsKey(key.getMostSignificantBits(), key.getLeastSignificantBits());
+    }
+
+    public boolean containsKey(long msb, long lsb) {
+        if (msb == 0L && lsb == 0L) {
+            return containsNilKey;
+        }
+        return indexOf(msb, lsb) >= 0;
+    }
+
+    public long getOrDefault(UUID key, long defaultValue) {
+        return getOrDefault(key.getMostSignificantBits(), key.getLeastSignificantBits(), defaultValue);
+    }
+
+    public long getOrDefault(long msb, long lsb, long defaultValue) {
+        if (msb == 0L && lsb == 0L) {
+            return containsNilKey ? values[mask + 1] : defaultValue;
+        }
+        int idx = indexOf(msb, lsb);
+        return idx >= 0 ? values[idx] : defaultValue;
+    }
+
+    public void put(UUID key, long value) {
+        put(key.getMostSignificantBits(), key.getLeastSignificantBits(), value);
+    }
+
+    public void put(long msb, long lsb, long value) {
+        if (msb == 0L && lsb == 0L) {
+            if (!containsNilKey) {
+                containsNilKey = true;
+                size++;
+            }
+            values[mask + 1] = value;
+            return;
+        }
+
+        int idx = mix(msb, lsb) & mask;
+        while (mostBits[idx] != 0L || leastBits[idx] != 0L) {
+            if (mostBits[idx] == msb && leastBits[idx] == lsb) {
+                values[idx] = value;
+                return;
+            }
+            idx = (idx + 1) & mask;
+        }
+        mostBits[idx] = msb;
+        leastBits[idx] = lsb;
+        values[idx] = value;
+        if (++size >= resizeAt) {
+            rehash((mask + 1) << 1);
+        }
+    }
+
+    public boolean remove(UUID key) {
+        long msb = key.getMostSignificantBits();
+        long lsb = key.getLeastSignificantBits();
+        if (msb == 0L && lsb == 0L) {
+            if (!containsNilKey) {
+                return false;
+            }
+            containsNilKey = false;
+            values[mask + 1] = 0L;
+            size--;
+            return true;
+        }
+        int idx = indexOf(msb, lsb);
+        if (idx < 0) {
+            return false;
+        }
+        shiftKeys(idx);
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        Arrays.fill(mostBits, 0L);
+        Arrays.fill(leastBits, 0L);
+        Arrays.fill(values, 0L);
+        containsNilKey = false;
+        size = 0;
+    }
+
+    /**
+     * Start with {@code nextSlot(-1)}; returns -1 when done.
+     */
+    public int nextSlot(int slot) {
+        int capacity = mask + 1;
+        for (int i = slot + 1; i < capacity; i++) {
+            if (mostBits[i] != 0L || leastBits[i] != 0L) {
+                return i;
+            }
+        }
+        if (slot < capacity && containsNilKey) {
+            return capacity;
+        }
+        return -1;
+    }
+
+    public long mostBitsAt(int slot) {
+        return mostBits[slot];
+    }
+
+    public long leastBitsAt(int slot) {
+        return leastBits[slot];
+    }
+
+    public long valueAt(int slot) {
+        return values[slot];
+    }
+
+    public UUID keyAt(int slot) {
+        return new UUID(mostBits[slot], leastBits[slot]);
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int slot = nextSlot(-1); slot >= 0; slot = nextSlot(slot)) {
+            visitor.accept(mostBits[slot], leastBits[slot], values[slot]);
+        }
+    }
+
+    public UuidLongMap copy() {
+        UuidLongMap copy = new UuidLongMap(0);
+        copy.mostBits = mostBits.clone();
+        copy.leastBits = leastBits.clone();
+        copy.values = values.clone();
+        copy.mask = mask;
+        copy.size = size;
+        copy.containsNilKey = containsNilKey;
+        copy.resizeAt = resizeAt;
+        return copy;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        for (int slot = nextSlot(-1); slot >= 0; slot = nextSlot(slot)) {
+            out.writeLong(mostBits[slot]);
+            out.writeLong(leastBits[slot]);
+            out.writeLong(values[slot]);
+        }
+    }
+
+    public static UuidLongMap readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Negative map size: " + count);
+        }
+        UuidLongMap map = new UuidLongMap(count);
+        for (int i = 0; i < count; i++) {
+            long msb = in.readLong();
+            long lsb = in.readLong();
+            map.put(msb, lsb, in.readLong());
+        }
+        return map;
+    }
+
+    private int indexOf(long msb, long lsb) {
+        int idx = mix(msb, lsb) & mask;
+        while (mostBits[idx] != 0L || leastBits[idx] != 0L) {
+            if (mostBits[idx] == msb && leastBits[idx] == lsb) {
+                return idx;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void shiftKeys(int pos) {
+        int last;
+        int slot;
+        for (;;) {
+            last = pos;
+            pos = (pos + 1) & mask;
+            for (;;) {
+                if (mostBits[pos] == 0L && leastBits[pos] == 0L) {
+                    mostBits[last] = 0L;
+                    leastBits[last] = 0L;
+                    values[last] = 0L;
+                    return;
+                }
+                slot = mix(mostBits[pos], leastBits[pos]) & mask;
+                if (last <= pos ? last >= slot || slot > pos : last >= slot && slot > pos) {
+                    break;
+                }
+                pos = (pos + 1) & mask;
+            }
+            mostBits[last] = mostBits[pos];
+            leastBits[last] = leastBits[pos];
+            values[last] = values[pos];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldMost = mostBits;
+        long[] oldLeast = leastBits;
+        long[] oldValues = values;
+        int oldCapacity = mask + 1;
+        long nilValue = oldValues[oldCapacity];
+
+        allocate(newCapacity);
+        values[newCapacity] = nilValue;
+        for (int i = 0; i < oldCapacity; i++) {
+            long msb = oldMost[i];
+            long lsb = oldLeast[i];
+            if (msb == 0L && lsb == 0L) {
+                continue;
+            }
+            int idx = mix(msb, lsb) & mask;
+            while (mostBits[idx] != 0L || leastBits[idx] != 0L) {
+                idx = (idx + 1) & mask;
+            }
+            mostBits[idx] = msb;
+            leastBits[idx] = lsb;
+            values[idx] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        mostBits = new long[capacity + 1];
+        leastBits = new long[capacity + 1];
+        values = new long[capacity + 1];
+        mask = capacity - 1;
+        resizeAt = Math.max(1, (int) (capacity * LOAD_FACTOR));
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(1, expectedSize) / (double) LOAD_FACTOR) + 1;
+        int capacity = Integer.highestOneBit(Math.max(2, needed - 1)) << 1;
+        return Math.max(2, capacity);
+    }
+
+    private static int mix(long msb, long lsb) {
+        long h = (msb ^ (lsb * 0x9E3779B97F4A7C15L)) * 0xC2B2AE3D27D4EB4FL;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @FunctionalInterface
+    public interface Visitor {
+        void accept(long mostBits, long leastBits, long value);
+    }
+}